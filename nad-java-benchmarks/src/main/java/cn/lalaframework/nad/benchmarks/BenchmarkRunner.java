@@ -0,0 +1,25 @@
+package cn.lalaframework.nad.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks matching the given regular expressions (all of them by default) with the GC profiler,
+ * so that allocation rates are reported next to the throughput.
+ * Use {@code org.openjdk.jmh.Main} directly for the full JMH command line.
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException {
+        ChainedOptionsBuilder builder = new OptionsBuilder().addProfiler(GCProfiler.class);
+        if (args.length == 0) {
+            builder.include(BenchmarkRunner.class.getPackage().getName() + ".*");
+        }
+        for (String arg : args) {
+            builder.include(arg);
+        }
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,45 @@
+package cn.lalaframework.nad.benchmarks;
+
+import cn.lalaframework.nad.interfaces.NadResult;
+import cn.lalaframework.nad.models.NadContext;
+import cn.lalaframework.nad.utils.ClassExcluder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full collection (routes, classes, enums and modules) followed by a dump.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CollectBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int routes;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private SyntheticApplication application;
+
+    @Setup
+    public void setup() {
+        application = new SyntheticApplication(routes);
+    }
+
+    @TearDown
+    public void tearDown() {
+        application.close();
+    }
+
+    @Benchmark
+    public NadResult collect() {
+        return NadContext.run(() -> {
+            NadContext.collectSpringWeb(application.getMapping());
+            return NadContext.dump();
+        }, new ClassExcluder(ClassExcluder.DEFAULT_RULES), null, parallelism);
+    }
+}
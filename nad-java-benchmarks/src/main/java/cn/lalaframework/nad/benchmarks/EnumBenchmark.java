@@ -0,0 +1,38 @@
+package cn.lalaframework.nad.benchmarks;
+
+import cn.lalaframework.nad.interfaces.NadEnum;
+import cn.lalaframework.nad.models.NadContext;
+import cn.lalaframework.nad.models.NadEnumImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enum construction for large generated enums.
+ * The upper bound is limited by the 64KB size of the generated static initializer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnumBenchmark {
+    @Param({"10", "100", "1000"})
+    public int constants;
+
+    private Class<? extends Enum<?>> enumClass;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        SyntheticClassLoader loader = new SyntheticClassLoader();
+        loader.addEnum("LargeEnum", constants);
+        enumClass = (Class<? extends Enum<?>>) loader.load("LargeEnum");
+    }
+
+    @Benchmark
+    public NadEnum buildEnum() {
+        return NadContext.run(() -> new NadEnumImpl(enumClass), null);
+    }
+}
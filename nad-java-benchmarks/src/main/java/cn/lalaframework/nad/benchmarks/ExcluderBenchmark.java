@@ -0,0 +1,54 @@
+package cn.lalaframework.nad.benchmarks;
+
+import cn.lalaframework.nad.utils.ClassExcluder;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ClassExcluder.matches over a mix of excluded (JDK, Spring) and included (generated) classes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExcluderBenchmark {
+    private static final int GENERATED = 16;
+
+    private ClassExcluder excluder;
+    private Class<?>[] classes;
+
+    @Setup
+    public void setup() {
+        excluder = new ClassExcluder(ClassExcluder.DEFAULT_RULES);
+        excluder.addRule("com.example.internal.*");
+        excluder.addRule("bench.Dto1*");
+
+        SyntheticClassLoader loader = new SyntheticClassLoader();
+        loader.addEnum("Status", 1);
+        List<Class<?>> list = new ArrayList<>(Arrays.asList(
+                String.class, Long.class, List.class, Map.class, HashMap.class, Optional.class,
+                TimeUnit.class, RestController.class, RequestMappingHandlerMapping.class, ClassExcluder.class
+        ));
+        for (int i = 0; i < GENERATED; i++) {
+            loader.addDto("Dto" + i, "Dto0", "Dto0", "Status");
+            list.add(loader.load("Dto" + i));
+        }
+        classes = list.toArray(new Class<?>[0]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(10 + GENERATED)
+    public int matches() {
+        int count = 0;
+        for (Class<?> clz : classes) {
+            if (excluder.matches(clz)) count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,44 @@
+package cn.lalaframework.nad.benchmarks;
+
+import cn.lalaframework.nad.interfaces.NadClass;
+import cn.lalaframework.nad.interfaces.NadMember;
+import cn.lalaframework.nad.models.NadClassImpl;
+import cn.lalaframework.nad.models.NadContext;
+import cn.lalaframework.nad.models.NadMemberBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Member building and class construction for wide beans.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MemberBenchmark {
+    @Param({"10", "100", "1000"})
+    public int fields;
+
+    private Class<?> bean;
+
+    @Setup
+    public void setup() {
+        SyntheticClassLoader loader = new SyntheticClassLoader();
+        loader.addWideBean("WideBean", fields);
+        bean = loader.load("WideBean");
+    }
+
+    @Benchmark
+    public List<NadMember> buildMemberList() {
+        return NadContext.run(() -> NadMemberBuilder.buildMemberList(bean), null);
+    }
+
+    @Benchmark
+    public NadClass buildClass() {
+        return NadContext.run(() -> new NadClassImpl(bean), null);
+    }
+}
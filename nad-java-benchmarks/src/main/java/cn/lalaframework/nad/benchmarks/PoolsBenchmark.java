@@ -0,0 +1,66 @@
+package cn.lalaframework.nad.benchmarks;
+
+import cn.lalaframework.nad.interfaces.NadAnnotation;
+import cn.lalaframework.nad.models.NadAnnotationImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The annotations of many elements, either copied for each element or interned by NadPools.
+ * The copies are all retained, while an interned element only retains a reference to the shared list.
+ * NOTE: gc.alloc.rate.norm of the GC profiler also counts the temporary annotations which are dropped by the pools.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PoolsBenchmark {
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Column {
+        String value();
+
+        boolean required() default false;
+    }
+
+    static class Foo {
+        @Deprecated
+        @Column(value = "id", required = true)
+        private Long id;
+    }
+
+    @Param({"1000", "20000"})
+    public int elements;
+
+    private Annotation[] annotations;
+
+    @Setup
+    public void setup() throws NoSuchFieldException {
+        annotations = Foo.class.getDeclaredField("id").getDeclaredAnnotations();
+    }
+
+    @Benchmark
+    public List<List<NadAnnotation>> copied() {
+        List<List<NadAnnotation>> res = new ArrayList<>(elements);
+        for (int i = 0; i < elements; i++) {
+            List<NadAnnotation> list = new ArrayList<>(annotations.length);
+            for (Annotation annotation : annotations) list.add(new NadAnnotationImpl(annotation));
+            res.add(list);
+        }
+        return res;
+    }
+
+    @Benchmark
+    public List<List<NadAnnotation>> interned() {
+        List<List<NadAnnotation>> res = new ArrayList<>(elements);
+        for (int i = 0; i < elements; i++) res.add(NadAnnotationImpl.fromArray(annotations));
+        return res;
+    }
+}
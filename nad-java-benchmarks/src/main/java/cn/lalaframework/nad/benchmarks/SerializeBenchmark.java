@@ -0,0 +1,70 @@
+package cn.lalaframework.nad.benchmarks;
+
+import cn.lalaframework.nad.interfaces.NadResult;
+import cn.lalaframework.nad.models.NadContext;
+import cn.lalaframework.nad.models.NadJsonWriter;
+import cn.lalaframework.nad.utils.ClassExcluder;
+import com.fasterxml.jackson.core.JsonFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of a collected result as JSON, in a single thread (parallelism = 1) or in parallel chunks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializeBenchmark {
+    @Param({"1000", "10000"})
+    public int routes;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private final JsonFactory factory = new JsonFactory();
+
+    private NadResult result;
+
+    @Setup
+    public void setup() {
+        SyntheticApplication application = new SyntheticApplication(routes);
+        try {
+            result = NadContext.run(() -> {
+                NadContext.collectSpringWeb(application.getMapping());
+                return NadContext.dump();
+            }, new ClassExcluder(ClassExcluder.DEFAULT_RULES), null, 1);
+        } finally {
+            application.close();
+        }
+    }
+
+    @Benchmark
+    public long serialize() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        NadJsonWriter.writeParallel(result, factory, out, null, parallelism);
+        return out.count;
+    }
+
+    /**
+     * Count the bytes without keeping them, so that only the serialization is measured.
+     */
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package cn.lalaframework.nad.benchmarks;
+
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+/**
+ * A RequestMappingHandlerMapping over generated controllers.
+ * Every controller has {@link #METHODS_PER_CONTROLLER} routes, and every two routes share a DTO,
+ * the DTOs reference each other through the parent and children properties.
+ */
+public class SyntheticApplication {
+    public static final int METHODS_PER_CONTROLLER = 10;
+
+    private final SyntheticClassLoader loader = new SyntheticClassLoader();
+    private final GenericApplicationContext context = new GenericApplicationContext();
+    private final RequestMappingHandlerMapping mapping = new RequestMappingHandlerMapping();
+
+    public SyntheticApplication(int routeCount) {
+        int dtoCount = Math.max(1, routeCount / 2);
+        int controllerCount = Math.max(1, routeCount / METHODS_PER_CONTROLLER);
+
+        loader.addEnum("Status", 5);
+        for (int i = 0; i < dtoCount; i++) {
+            loader.addDto("Dto" + i, "Dto" + (i * 7 + 1) % dtoCount, "Dto" + (i * 13 + 2) % dtoCount, "Status");
+        }
+
+        context.setClassLoader(loader);
+        for (int i = 0; i < controllerCount; i++) {
+            String[] dtos = new String[METHODS_PER_CONTROLLER];
+            for (int j = 0; j < dtos.length; j++) {
+                dtos[j] = "Dto" + (i * METHODS_PER_CONTROLLER + j) / 2 % dtoCount;
+            }
+            String name = "Controller" + i;
+            loader.addController(name, dtos);
+            context.registerBean(name, loader.load(name), bd -> bd.setLazyInit(true));
+        }
+        context.refresh();
+
+        mapping.setApplicationContext(context);
+        mapping.afterPropertiesSet();
+    }
+
+    public RequestMappingHandlerMapping getMapping() {
+        return mapping;
+    }
+
+    public void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,273 @@
+package cn.lalaframework.nad.benchmarks;
+
+import org.springframework.asm.AnnotationVisitor;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Generates controllers, DTOs and enums in memory, so that the benchmarks can scale to thousands of routes
+ * without checking thousands of source files into the repository.
+ * <p>
+ * Classes are defined lazily: references between generated classes are resolved through {@link #findClass}.
+ */
+public class SyntheticClassLoader extends ClassLoader implements Opcodes {
+    public static final String PACKAGE = "bench";
+
+    private static final String OBJECT = "java/lang/Object";
+    private static final String ENUM = "java/lang/Enum";
+    private static final String NULLABLE = "Lorg/springframework/lang/Nullable;";
+    private static final String REST_CONTROLLER = "Lorg/springframework/web/bind/annotation/RestController;";
+    private static final String GET_MAPPING = "Lorg/springframework/web/bind/annotation/GetMapping;";
+    private static final String REQUEST_PARAM = "Lorg/springframework/web/bind/annotation/RequestParam;";
+
+    private final Map<String, byte[]> pending = new HashMap<>();
+
+    public SyntheticClassLoader() {
+        super(SyntheticClassLoader.class.getClassLoader());
+    }
+
+    public static String internalName(String simpleName) {
+        return PACKAGE + "/" + simpleName;
+    }
+
+    private static String descriptor(String simpleName) {
+        return "L" + internalName(simpleName) + ";";
+    }
+
+    /**
+     * A bean with {@code id}, {@code name}, {@code createdAt}, {@code status}, a {@code parent} of type
+     * {@code parentDto}, a list of {@code childDto} and a string map.
+     */
+    public void addDto(String name, String parentDto, String childDto, String statusEnum) {
+        ClassWriter cw = beginClass(name);
+        String owner = internalName(name);
+        addProperty(cw, owner, "id", "Ljava/lang/Long;", null);
+        addProperty(cw, owner, "name", "Ljava/lang/String;", null);
+        addProperty(cw, owner, "createdAt", "Ljava/util/Date;", null);
+        addProperty(cw, owner, "status", descriptor(statusEnum), null);
+        addProperty(cw, owner, "parent", descriptor(parentDto), null);
+        addProperty(cw, owner, "children", "Ljava/util/List;", "Ljava/util/List<" + descriptor(childDto) + ">;");
+        addProperty(cw, owner, "tags", "Ljava/util/Map;", "Ljava/util/Map<Ljava/lang/String;Ljava/lang/String;>;");
+        add(name, cw);
+    }
+
+    /**
+     * A bean with {@code fieldCount} properties cycling through a few scalar and generic types.
+     */
+    public void addWideBean(String name, int fieldCount) {
+        ClassWriter cw = beginClass(name);
+        String owner = internalName(name);
+        for (int i = 0; i < fieldCount; i++) {
+            String field = "field" + i;
+            switch (i % 4) {
+                case 0:
+                    addProperty(cw, owner, field, "Ljava/lang/String;", null);
+                    break;
+                case 1:
+                    addProperty(cw, owner, field, "Ljava/lang/Long;", null);
+                    break;
+                case 2:
+                    addProperty(cw, owner, field, "Ljava/util/List;", "Ljava/util/List<Ljava/lang/String;>;");
+                    break;
+                default:
+                    addProperty(cw, owner, field, "Ljava/util/Map;",
+                            "Ljava/util/Map<Ljava/lang/String;Ljava/lang/Integer;>;");
+                    break;
+            }
+        }
+        add(name, cw);
+    }
+
+    /**
+     * An enum with {@code constantCount} constants, each carrying an {@code int code} property.
+     */
+    public void addEnum(String name, int constantCount) {
+        String owner = internalName(name);
+        String desc = descriptor(name);
+        String arrayDesc = "[" + desc;
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_ENUM, owner, "L" + ENUM + "<" + desc + ">;", ENUM,
+                null);
+
+        for (int i = 0; i < constantCount; i++) {
+            cw.visitField(ACC_PUBLIC | ACC_STATIC | ACC_FINAL | ACC_ENUM, "C" + i, desc, null, null).visitEnd();
+        }
+        cw.visitField(ACC_PRIVATE | ACC_FINAL, "code", "I", null, null).visitEnd();
+        cw.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL | ACC_SYNTHETIC, "$VALUES", arrayDesc, null, null)
+                .visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "values", "()" + arrayDesc, null, null);
+        mv.visitCode();
+        mv.visitFieldInsn(GETSTATIC, owner, "$VALUES", arrayDesc);
+        mv.visitMethodInsn(INVOKEVIRTUAL, arrayDesc, "clone", "()Ljava/lang/Object;", false);
+        mv.visitTypeInsn(CHECKCAST, arrayDesc);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "valueOf", "(Ljava/lang/String;)" + desc, null, null);
+        mv.visitCode();
+        mv.visitLdcInsn(Type.getType(desc));
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESTATIC, ENUM, "valueOf", "(Ljava/lang/Class;Ljava/lang/String;)Ljava/lang/Enum;",
+                false);
+        mv.visitTypeInsn(CHECKCAST, owner);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_PRIVATE, "<init>", "(Ljava/lang/String;II)V", "(I)V", null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitVarInsn(ILOAD, 2);
+        mv.visitMethodInsn(INVOKESPECIAL, ENUM, "<init>", "(Ljava/lang/String;I)V", false);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ILOAD, 3);
+        mv.visitFieldInsn(PUTFIELD, owner, "code", "I");
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC, "getCode", "()I", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, owner, "code", "I");
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+        mv.visitCode();
+        for (int i = 0; i < constantCount; i++) {
+            mv.visitTypeInsn(NEW, owner);
+            mv.visitInsn(DUP);
+            mv.visitLdcInsn("C" + i);
+            mv.visitLdcInsn(i);
+            mv.visitLdcInsn(i * 10);
+            mv.visitMethodInsn(INVOKESPECIAL, owner, "<init>", "(Ljava/lang/String;II)V", false);
+            mv.visitFieldInsn(PUTSTATIC, owner, "C" + i, desc);
+        }
+        mv.visitLdcInsn(constantCount);
+        mv.visitTypeInsn(ANEWARRAY, owner);
+        for (int i = 0; i < constantCount; i++) {
+            mv.visitInsn(DUP);
+            mv.visitLdcInsn(i);
+            mv.visitFieldInsn(GETSTATIC, owner, "C" + i, desc);
+            mv.visitInsn(AASTORE);
+        }
+        mv.visitFieldInsn(PUTSTATIC, owner, "$VALUES", arrayDesc);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        add(name, cw);
+    }
+
+    /**
+     * A {@code @RestController} whose i-th method is mapped to {@code GET /{name}/m{i}}, takes a
+     * {@code @RequestParam Long id} and returns {@code dtos[i]} (every other method wraps it in a {@code List}).
+     */
+    public void addController(String name, String... dtos) {
+        ClassWriter cw = beginClass(name);
+        cw.visitAnnotation(REST_CONTROLLER, true).visitEnd();
+        for (int i = 0; i < dtos.length; i++) {
+            String returnType = descriptor(dtos[i]);
+            String desc;
+            String signature;
+            if (i % 2 == 0) {
+                desc = "(Ljava/lang/Long;)" + returnType;
+                signature = null;
+            } else {
+                desc = "(Ljava/lang/Long;)Ljava/util/List;";
+                signature = "(Ljava/lang/Long;)Ljava/util/List<" + returnType + ">;";
+            }
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "m" + i, desc, signature, null);
+            mv.visitParameter("id", 0);
+            AnnotationVisitor av = mv.visitAnnotation(GET_MAPPING, true);
+            AnnotationVisitor value = av.visitArray("value");
+            value.visit(null, "/" + name + "/m" + i);
+            value.visitEnd();
+            av.visitEnd();
+            av = mv.visitParameterAnnotation(0, REQUEST_PARAM, true);
+            av.visit("value", "id");
+            av.visitEnd();
+            mv.visitCode();
+            mv.visitInsn(ACONST_NULL);
+            mv.visitInsn(ARETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+        add(name, cw);
+    }
+
+    public Class<?> load(String simpleName) {
+        try {
+            return loadClass(PACKAGE + "." + simpleName);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        byte[] bytes;
+        synchronized (pending) {
+            bytes = pending.remove(name);
+        }
+        if (bytes == null) throw new ClassNotFoundException(name);
+        return defineClass(name, bytes, 0, bytes.length);
+    }
+
+    private void add(String simpleName, ClassWriter cw) {
+        synchronized (pending) {
+            pending.put(PACKAGE + "." + simpleName, cw.toByteArray());
+        }
+    }
+
+    private static ClassWriter beginClass(String name) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_8, ACC_PUBLIC | ACC_SUPER, internalName(name), null, OBJECT, null);
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        return cw;
+    }
+
+    private static void addProperty(ClassWriter cw, String owner, String name, String desc, String signature) {
+        cw.visitField(ACC_PRIVATE, name, desc, signature, null).visitEnd();
+        String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "get" + suffix, "()" + desc,
+                signature == null ? null : "()" + signature, null);
+        mv.visitAnnotation(NULLABLE, true).visitEnd();
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, owner, name, desc);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC, "set" + suffix, "(" + desc + ")V",
+                signature == null ? null : "(" + signature + ")V", null);
+        mv.visitParameter(name, 0);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitFieldInsn(PUTFIELD, owner, name, desc);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+}
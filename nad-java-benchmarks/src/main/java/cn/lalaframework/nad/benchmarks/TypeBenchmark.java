@@ -0,0 +1,77 @@
+package cn.lalaframework.nad.benchmarks;
+
+import cn.lalaframework.nad.models.NadContext;
+import cn.lalaframework.nad.utils.ClassExcluder;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * collectType for a generic wrapper which appears many times, as `Result<Page<T>>` does in a real application.
+ * The same instance is seen when a method is visited again, and an equal instance is seen when another method
+ * with the same signature is visited.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TypeBenchmark {
+    private static final int REPEAT = 10000;
+
+    private Type[] sameInstances;
+    private Type[] equalInstances;
+    private ClassExcluder excluder;
+
+    public static class Page<T> {
+        public List<T> getItems() {
+            return null;
+        }
+    }
+
+    public static class Result<T> {
+        public T getData() {
+            return null;
+        }
+    }
+
+    public Result<Page<Map<String, List<Long>>>> sample() {
+        return null;
+    }
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        excluder = new ClassExcluder(ClassExcluder.DEFAULT_RULES);
+        sameInstances = new Type[REPEAT];
+        Arrays.fill(sameInstances, TypeBenchmark.class.getMethod("sample").getGenericReturnType());
+        equalInstances = new Type[REPEAT];
+        for (int i = 0; i < REPEAT; i++) {
+            // Each Method copy parses its own generic signature.
+            equalInstances[i] = TypeBenchmark.class.getMethod("sample").getGenericReturnType();
+        }
+    }
+
+    private Object collect(Type[] types) {
+        return NadContext.run(() -> {
+            for (Type type : types) NadContext.cc(type);
+            return NadContext.dump();
+        }, excluder);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REPEAT)
+    public Object sameInstance() {
+        return collect(sameInstances);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REPEAT)
+    public Object equalInstance() {
+        return collect(equalInstances);
+    }
+}
@@ -2,7 +2,7 @@ package cn.lalaframework.nad.interfaces;
 
 import org.springframework.lang.NonNull;
 
-import java.util.stream.Collectors;
+import java.util.List;
 
 public interface NadRoute extends NadRouteInfo, NadRouteHandler {
     /**
@@ -12,11 +12,12 @@ public interface NadRoute extends NadRouteInfo, NadRouteHandler {
      */
     @NonNull
     static String getSortKey(@NonNull NadRoute route) {
-        return String.format(
-                "%s#%s(%s)",
-                route.getBean(),
-                route.getName(),
-                route.getParameters().stream().map(NadParameter::getType).collect(Collectors.joining(","))
-        );
+        StringBuilder sb = new StringBuilder().append(route.getBean()).append('#').append(route.getName()).append('(');
+        List<NadParameter> parameters = route.getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(parameters.get(i).getType());
+        }
+        return sb.append(')').toString();
     }
 }
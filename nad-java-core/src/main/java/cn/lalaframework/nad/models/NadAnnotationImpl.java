@@ -3,13 +3,11 @@ package cn.lalaframework.nad.models;
 import cn.lalaframework.nad.interfaces.NadAnnotation;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.lang.NonNull;
+import org.springframework.util.ObjectUtils;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedElement;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.stream.Collectors;
 
 public class NadAnnotationImpl implements NadAnnotation {
@@ -17,16 +15,30 @@ public class NadAnnotationImpl implements NadAnnotation {
     private final String type;
     @NonNull
     private final Map<String, Object> attributes;
+    private final int hash;
 
     public NadAnnotationImpl(@NonNull Annotation a) {
-        type = a.annotationType().getTypeName();
+        type = NadPools.typeNames.intern(a.annotationType().getTypeName());
         Map<String, Object> map;
         try {
             map = AnnotationUtils.getAnnotationAttributes(a);
         } catch (IllegalStateException ignored) {
             map = new HashMap<>();
         }
-        attributes = map;
+        // The attributes may be shared by many definitions, so they must not be changed.
+        attributes = Collections.unmodifiableMap(map);
+        hash = hashOf(type, attributes);
+    }
+
+    /**
+     * The attribute values may be arrays, so they are hashed and compared by their contents.
+     */
+    private static int hashOf(@NonNull String type, @NonNull Map<String, Object> attributes) {
+        int res = type.hashCode();
+        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+            res += entry.getKey().hashCode() ^ ObjectUtils.nullSafeHashCode(entry.getValue());
+        }
+        return res;
     }
 
     /**
@@ -37,7 +49,13 @@ public class NadAnnotationImpl implements NadAnnotation {
      */
     @NonNull
     public static List<NadAnnotation> fromArray(Annotation[] annotations) {
-        return Arrays.stream(annotations).map(NadAnnotationImpl::new).collect(Collectors.toList());
+        if (annotations.length == 0) return Collections.emptyList();
+        // Both the annotations and the list are interned, an element which has the same annotations as another
+        // one shares the same list.
+        List<NadAnnotation> list = Arrays.stream(annotations)
+                .map(a -> NadPools.annotations.intern(new NadAnnotationImpl(a)))
+                .collect(Collectors.toList());
+        return NadPools.annotationLists.intern(Collections.unmodifiableList(list));
     }
 
     /**
@@ -63,4 +81,22 @@ public class NadAnnotationImpl implements NadAnnotation {
     public Map<String, Object> getAttributes() {
         return attributes;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof NadAnnotationImpl)) return false;
+        NadAnnotationImpl that = (NadAnnotationImpl) o;
+        if (hash != that.hash || !type.equals(that.type) || attributes.size() != that.attributes.size()) return false;
+        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+            if (!that.attributes.containsKey(entry.getKey())) return false;
+            if (!ObjectUtils.nullSafeEquals(entry.getValue(), that.attributes.get(entry.getKey()))) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
@@ -6,10 +6,7 @@ import cn.lalaframework.nad.interfaces.NadMethod;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 
-import java.lang.reflect.Modifier;
-import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
 import java.util.stream.Collectors;
 
 public class NadClassImpl extends NadDefImpl implements NadClass {
@@ -39,30 +36,27 @@ public class NadClassImpl extends NadDefImpl implements NadClass {
      * @param clz A standard java class.
      */
     public NadClassImpl(Class<?> clz) {
-        super(clz);
-
-        modifiers = clz.getModifiers();
-
-        // For each generic type parameter, collect them and convert to type name strings.
-        typeParameters = Arrays.stream(clz.getTypeParameters()).map(NadContext::cc).collect(Collectors.toList());
-
-        // Convert fields and methods of class to a NadMember object.
-        // This logic is very complex, so a NadMemberBuilder class is used to handle it.
-        members = NadMemberBuilder.buildMemberList(clz);
+        this(clz, NadClassShape.of(clz));
+    }
 
-        // Get the superclass of specified class, collect it and convert to a type name string.
-        // NOTE: It may be null.
-        superclass = Optional.ofNullable(clz.getGenericSuperclass()).map(NadContext::cc).orElse(null);
+    /**
+     * The reflective parts are taken from a cached shape, only the context-specific parts are built here.
+     */
+    private NadClassImpl(@NonNull Class<?> clz, @NonNull NadClassShape shape) {
+        super(clz.getTypeName(), shape.getAnnotations());
 
-        // For each interface, collect them and convert to type name strings.
-        interfaces = Arrays.stream(clz.getGenericInterfaces()).map(NadContext::cc).collect(Collectors.toList());
+        modifiers = shape.getModifiers();
+        typeParameters = shape.getTypeParameters();
+        members = shape.getMembers();
+        superclass = shape.getSuperclass();
+        interfaces = shape.getInterfaces();
+        innerClasses = shape.getInnerClasses();
 
-        // For each public static subclass, collect those that they may implement some known interfaces.
-        innerClasses = Arrays.stream(clz.getDeclaredClasses())
-                .filter(i -> Modifier.isPublic(i.getModifiers()) && Modifier.isStatic(i.getModifiers()))
-                .map(NadContext::cc).collect(Collectors.toList());
+        // Collect all generic type parameters, members, superclass, interfaces and public static subclasses.
+        // The shape is shared by all contexts, but the types must be collected by current one.
+        shape.getReferencedTypes().forEach(NadContext::collectType);
 
-        importantMethods = Arrays.stream(clz.getDeclaredMethods())
+        importantMethods = shape.getDeclaredMethods().stream()
                 .filter(NadContext::matchImportantMethod)
                 .map(NadMethodImpl::new)
                 .collect(Collectors.toList());
@@ -0,0 +1,144 @@
+package cn.lalaframework.nad.models;
+
+import cn.lalaframework.nad.interfaces.NadAnnotation;
+import cn.lalaframework.nad.interfaces.NadMember;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The class-intrinsic parts of a NadClass, they never change for the lifetime of the class.
+ * Shapes are cached by a ClassValue, so that the cache does not prevent the ClassLoader from being unloaded.
+ * NOTE: Nothing is collected while a shape is built, the referenced types are recorded and collected by each NadContext,
+ * so that the classExcluder and importantMethodMatcher of each context are still applied.
+ */
+final class NadClassShape {
+    private static final ClassValue<NadClassShape> cache = new ClassValue<NadClassShape>() {
+        @Override
+        protected NadClassShape computeValue(Class<?> type) {
+            return new NadClassShape(type);
+        }
+    };
+
+    @NonNull
+    private final List<NadAnnotation> annotations;
+
+    private final int modifiers;
+
+    @NonNull
+    private final List<String> typeParameters;
+
+    @NonNull
+    private final List<NadMember> members;
+
+    @Nullable
+    private final String superclass;
+
+    @NonNull
+    private final List<String> interfaces;
+
+    @NonNull
+    private final List<String> innerClasses;
+
+    @NonNull
+    private final List<Method> declaredMethods;
+
+    @NonNull
+    private final List<Type> referencedTypes;
+
+    private NadClassShape(@NonNull Class<?> clz) {
+        List<Type> types = new ArrayList<>();
+
+        annotations = Collections.unmodifiableList(NadAnnotationImpl.fromAnnotatedElement(clz));
+
+        modifiers = clz.getModifiers();
+
+        typeParameters = names(Arrays.asList(clz.getTypeParameters()), types);
+
+        members = Collections.unmodifiableList(NadMemberBuilder.buildMemberList(clz, types));
+
+        // NOTE: It may be null.
+        Type genericSuperclass = clz.getGenericSuperclass();
+        superclass = genericSuperclass == null ? null : names(Collections.singletonList(genericSuperclass), types).get(0);
+
+        interfaces = names(Arrays.asList(clz.getGenericInterfaces()), types);
+
+        // For each public static subclass, collect those that they may implement some known interfaces.
+        innerClasses = names(Arrays.stream(clz.getDeclaredClasses())
+                .filter(i -> Modifier.isPublic(i.getModifiers()) && Modifier.isStatic(i.getModifiers()))
+                .collect(Collectors.toList()), types);
+
+        declaredMethods = Collections.unmodifiableList(NadMemberBuilder.getDeclaredMethods(clz));
+
+        referencedTypes = Collections.unmodifiableList(types);
+    }
+
+    /**
+     * Get the shape of a class, it is built at the first time.
+     */
+    @NonNull
+    static NadClassShape of(@NonNull Class<?> clz) {
+        return cache.get(clz);
+    }
+
+    /**
+     * Record the types and convert them to type name strings.
+     */
+    @NonNull
+    private static List<String> names(@NonNull List<? extends Type> list, @NonNull List<Type> types) {
+        types.addAll(list);
+        return Collections.unmodifiableList(list.stream().map(Type::getTypeName).collect(Collectors.toList()));
+    }
+
+    @NonNull
+    List<NadAnnotation> getAnnotations() {
+        return annotations;
+    }
+
+    int getModifiers() {
+        return modifiers;
+    }
+
+    @NonNull
+    List<String> getTypeParameters() {
+        return typeParameters;
+    }
+
+    @NonNull
+    List<NadMember> getMembers() {
+        return members;
+    }
+
+    @Nullable
+    String getSuperclass() {
+        return superclass;
+    }
+
+    @NonNull
+    List<String> getInterfaces() {
+        return interfaces;
+    }
+
+    @NonNull
+    List<String> getInnerClasses() {
+        return innerClasses;
+    }
+
+    @NonNull
+    List<Method> getDeclaredMethods() {
+        return declaredMethods;
+    }
+
+    /**
+     * All types referenced by the shape, in the order that they were seen.
+     */
+    @NonNull
+    List<Type> getReferencedTypes() {
+        return referencedTypes;
+    }
+}
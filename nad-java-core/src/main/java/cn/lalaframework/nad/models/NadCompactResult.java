@@ -0,0 +1,229 @@
+package cn.lalaframework.nad.models;
+
+import cn.lalaframework.nad.interfaces.*;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * A compact representation of a NadResult, which is much smaller than the NadResult itself when it is serialized.
+ * <p>
+ * 1. The type names (including the names of modules, classes and enums) and the annotation types are stored once
+ * in the `strings` table, they are referenced by their indexes in the table.
+ * 2. Each distinct annotation is stored once in the `annotations` table, a list of annotations is a list of
+ * indexes in the table.
+ * 3. The empty lists and maps, the null values and the zero modifiers are omitted.
+ * 4. A parameter is a tuple of [name, type, annotations], and a member is a tuple of [name, type, annotations],
+ * where the annotations of a member is a triple of [field, getter, setter], a trailing item which is empty
+ * is omitted, and an empty item of a triple is null.
+ * <p>
+ * Other fields have the same names and values as those of NadResult, for example:
+ * <pre>
+ * {
+ *   "format": "compact",
+ *   "strings": ["com.x.User", "java.lang.Long", "com.fasterxml.jackson.annotation.JsonProperty"],
+ *   "annotations": [{ "type": 2, "attributes": { "value": "user_id" } }],
+ *   "classes": [{ "name": 0, "members": [["id", 1], ["userId", 1, [[0]]]] }],
+ *   ...
+ * }
+ * </pre>
+ */
+public final class NadCompactResult {
+    @NonNull
+    public static final String FORMAT = "compact";
+
+    @NonNull
+    private final Map<String, Integer> indexes;
+
+    @NonNull
+    private final List<String> strings;
+
+    @NonNull
+    private final Map<NadAnnotation, Integer> annotationIndexes;
+
+    @NonNull
+    private final List<Object> annotations;
+
+    /**
+     * The encoded annotation lists, they are interned, so the same list is encoded only once.
+     */
+    @NonNull
+    private final Map<List<NadAnnotation>, List<Object>> annotationLists;
+
+    private NadCompactResult() {
+        indexes = new HashMap<>();
+        strings = new ArrayList<>();
+        annotationIndexes = new HashMap<>();
+        annotations = new ArrayList<>();
+        annotationLists = new IdentityHashMap<>();
+    }
+
+    /**
+     * Encode a NadResult into the compact representation, which consists of maps, lists and plain values,
+     * so that it can be serialized by any JSON library.
+     *
+     * @param result A result dumped by NadContext.
+     */
+    @NonNull
+    public static Map<String, Object> encode(@NonNull NadResult result) {
+        NadCompactResult encoder = new NadCompactResult();
+        List<Object> modules = encoder.list(result.getModules(), encoder::encodeModule);
+        List<Object> routes = encoder.list(result.getRoutes(), encoder::encodeRoute);
+        List<Object> classes = encoder.list(result.getClasses(), encoder::encodeClass);
+        List<Object> enums = encoder.list(result.getEnums(), encoder::encodeEnum);
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("format", FORMAT);
+        // The table is written first, so that a streaming parser can resolve the indexes as soon as it sees them.
+        res.put("strings", encoder.strings);
+        res.put("annotations", encoder.annotations);
+        res.put("modules", modules);
+        res.put("routes", routes);
+        res.put("classes", classes);
+        res.put("enums", enums);
+        return res;
+    }
+
+    private int index(@NonNull String value) {
+        Integer res = indexes.get(value);
+        if (res != null) return res;
+        indexes.put(value, strings.size());
+        strings.add(value);
+        return strings.size() - 1;
+    }
+
+    @NonNull
+    private List<Object> indexes(@NonNull List<String> values) {
+        List<Object> res = new ArrayList<>(values.size());
+        for (String value : values) res.add(index(value));
+        return res;
+    }
+
+    @NonNull
+    private <T> List<Object> list(@NonNull List<T> values, @NonNull Function<T, Object> encoder) {
+        List<Object> res = new ArrayList<>(values.size());
+        for (T value : values) res.add(encoder.apply(value));
+        return res;
+    }
+
+    private static void putIfPresent(@NonNull Map<String, Object> map, @NonNull String key, @Nullable Object value) {
+        if (value == null) return;
+        if (value instanceof Collection && ((Collection<?>) value).isEmpty()) return;
+        if (value instanceof Map && ((Map<?, ?>) value).isEmpty()) return;
+        if (value instanceof Integer && (Integer) value == 0) return;
+        map.put(key, value);
+    }
+
+    @Nullable
+    private List<Object> encodeAnnotations(@Nullable List<NadAnnotation> annotations) {
+        if (annotations == null || annotations.isEmpty()) return null;
+        return annotationLists.computeIfAbsent(annotations, k -> list(k, this::index));
+    }
+
+    private int index(@NonNull NadAnnotation annotation) {
+        Integer res = annotationIndexes.get(annotation);
+        if (res != null) return res;
+        Map<String, Object> encoded = new LinkedHashMap<>();
+        encoded.put("type", index(annotation.getType()));
+        putIfPresent(encoded, "attributes", annotation.getAttributes());
+        annotationIndexes.put(annotation, annotations.size());
+        annotations.add(encoded);
+        return annotations.size() - 1;
+    }
+
+    /**
+     * Create a tuple, the trailing null items are omitted.
+     */
+    @NonNull
+    private static List<Object> tuple(@NonNull Object... items) {
+        int size = items.length;
+        while (size > 0 && items[size - 1] == null) size--;
+        return Arrays.asList(Arrays.copyOf(items, size));
+    }
+
+    /**
+     * Encode the fields of a NadDef, the name is a type name if the def is a module, a class or an enum.
+     */
+    @NonNull
+    private Map<String, Object> encodeDef(@NonNull NadDef def, boolean isType) {
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("name", isType ? index(def.getName()) : def.getName());
+        putIfPresent(res, "annotations", encodeAnnotations(def.getAnnotations()));
+        return res;
+    }
+
+    @NonNull
+    private Object encodeModule(@NonNull NadModule module) {
+        return encodeDef(module, true);
+    }
+
+    @NonNull
+    private Map<String, Object> encodeMethod(@NonNull NadMethod method) {
+        Map<String, Object> res = encodeDef(method, false);
+        putIfPresent(res, "parameters", list(method.getParameters(), this::encodeParameter));
+        putIfPresent(res, "typeParameters", indexes(method.getTypeParameters()));
+        res.put("returnType", index(method.getReturnType()));
+        putIfPresent(res, "modifiers", method.getModifiers());
+        return res;
+    }
+
+    @NonNull
+    private Object encodeParameter(@NonNull NadParameter parameter) {
+        return tuple(parameter.getName(), index(parameter.getType()), encodeAnnotations(parameter.getAnnotations()));
+    }
+
+    @NonNull
+    private Object encodeRoute(@NonNull NadRoute route) {
+        Map<String, Object> res = encodeMethod(route);
+        res.put("bean", index(route.getBean()));
+        putIfPresent(res, "methods", route.getMethods());
+        putIfPresent(res, "patterns", route.getPatterns());
+        putIfPresent(res, "headers", route.getHeaders());
+        putIfPresent(res, "consumes", route.getConsumes());
+        putIfPresent(res, "produces", route.getProduces());
+        putIfPresent(res, "customFlags", route.getCustomFlags());
+        return res;
+    }
+
+    @NonNull
+    private Object encodeClass(@NonNull NadClass clz) {
+        Map<String, Object> res = encodeDef(clz, true);
+        String superclass = clz.getSuperclass();
+        if (superclass != null) res.put("superclass", index(superclass));
+        putIfPresent(res, "members", list(clz.getMembers(), this::encodeMember));
+        putIfPresent(res, "typeParameters", indexes(clz.getTypeParameters()));
+        putIfPresent(res, "interfaces", indexes(clz.getInterfaces()));
+        putIfPresent(res, "innerClasses", indexes(clz.getInnerClasses()));
+        putIfPresent(res, "importantMethods", list(clz.getImportantMethods(), this::encodeMethod));
+        putIfPresent(res, "modifiers", clz.getModifiers());
+        return res;
+    }
+
+    @NonNull
+    private Object encodeMember(@NonNull NadMember member) {
+        List<Object> annotations = new ArrayList<>(member.getAnnotations().size());
+        boolean isEmpty = true;
+        for (List<NadAnnotation> item : member.getAnnotations()) {
+            List<Object> encoded = encodeAnnotations(item);
+            if (encoded != null) isEmpty = false;
+            annotations.add(encoded);
+        }
+        return tuple(member.getName(), index(member.getType()), isEmpty ? null : annotations);
+    }
+
+    @NonNull
+    private Object encodeEnum(@NonNull NadEnum nadEnum) {
+        Map<String, Object> res = encodeDef(nadEnum, true);
+        putIfPresent(res, "constants", list(nadEnum.getConstants(), this::encodeConstant));
+        return res;
+    }
+
+    @NonNull
+    private Object encodeConstant(@NonNull NadEnumConstant constant) {
+        Map<String, Object> res = encodeDef(constant, false);
+        putIfPresent(res, "properties", constant.getProperties());
+        res.put("value", NadDetachedResult.plainValueOf(constant));
+        return res;
+    }
+}
@@ -3,13 +3,21 @@ package cn.lalaframework.nad.models;
 import cn.lalaframework.nad.exceptions.NadContextRecursionException;
 import cn.lalaframework.nad.exceptions.NoNadContextException;
 import cn.lalaframework.nad.interfaces.*;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.springframework.aop.ClassFilter;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
 
+import java.io.IOException;
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -17,37 +25,111 @@ public class NadContext {
     @NonNull
     private static final ThreadLocal<NadContext> current = new ThreadLocal<>();
 
+    /**
+     * The total order of collected routes, the route info is described only if the sort keys are equal.
+     */
+    @NonNull
+    private static final Comparator<SortedRoute> ROUTE_ORDER = Comparator.<SortedRoute, String>comparing(r -> r.key)
+            .thenComparing(r -> describeInfo(r.route));
+
+    @NonNull
+    private final ConcurrentHashMap<String, NadClass> classesMap;
+
+    @NonNull
+    private final ConcurrentHashMap<String, NadModule> modulesMap;
+
+    @NonNull
+    private final ConcurrentHashMap<String, NadEnum> enumsMap;
+
+    /**
+     * Collected routes in insertion order, they are sorted only once by the dump method.
+     */
+    @NonNull
+    private final ConcurrentLinkedQueue<SortedRoute> routes;
+
+    /**
+     * Names of classes and enums which have been claimed by a collecting task.
+     * A name is claimed before its definition is created, so that each definition is created only once,
+     * even if several threads reach the same type at the same time.
+     */
     @NonNull
-    private final TreeMap<String, NadClass> classesMap;
+    private final Set<String> collectedNames;
 
+    /**
+     * Types which have been fully walked by collectType, they are skipped at once when they are seen again.
+     * NOTE: A generic type such as `Result<List<Foo>>` is compared by deep hashCode and equals.
+     */
+    @NonNull
+    private final Set<Type> visitedTypes;
+
+    /**
+     * An identity index in front of visitedTypes for current thread.
+     * The same Type instance is usually seen many times (for example, a shared generic return type),
+     * so it can be skipped without computing the deep hashCode again.
+     */
     @NonNull
-    private final TreeMap<String, NadModule> modulesMap;
+    private final ThreadLocal<Set<Type>> visitedInstances;
 
+    /**
+     * The types which are referenced by each owner (a module, a class or an enum), by their names.
+     * It is turned into a dependency graph by the dumpDependencies method.
+     */
     @NonNull
-    private final TreeMap<String, NadEnum> enumsMap;
+    private final ConcurrentHashMap<String, Queue<Type>> references;
 
+    /**
+     * The name of the owner whose task is running on current thread, or null if there is no such task.
+     */
     @NonNull
-    private final TreeSet<NadRoute> routes;
+    private final ThreadLocal<String> owner;
 
     @Nullable
     private final ClassFilter classExcluder;
     @Nullable
     private final Predicate<Method> importantMethodMatcher;
 
+    /**
+     * Collecting tasks which are waiting to run in single thread mode.
+     * Definitions are created by the outermost task one after another, rather than inside each other,
+     * so that the depth of the call stack does not depend on the depth of the type graph.
+     */
+    @NonNull
+    private final ArrayDeque<Runnable> pending;
+
+    /**
+     * Whether the pending tasks are being run by an outer call in single thread mode.
+     */
+    private boolean draining;
+
+    /**
+     * The pool which collecting tasks are submitted to, or null if the context runs in a single thread.
+     */
+    @Nullable
+    private final ForkJoinPool pool;
+
+    /**
+     * The first error thrown by a collecting task, it will be rethrown to the caller of the transaction.
+     */
     @NonNull
-    private final LinkedHashSet<Type> stack;
+    private final AtomicReference<Throwable> failure;
 
-    private NadContext(@Nullable ClassFilter classExcluder, @Nullable Predicate<Method> importantMethodMatcher) {
+    private NadContext(@Nullable ClassFilter classExcluder,
+                       @Nullable Predicate<Method> importantMethodMatcher,
+                       @Nullable ForkJoinPool pool) {
         this.classExcluder = classExcluder;
         this.importantMethodMatcher = importantMethodMatcher;
-        classesMap = new TreeMap<>();
-        enumsMap = new TreeMap<>();
-        modulesMap = new TreeMap<>();
-
-        // To ensure that uniformity of the results, it is necessary to be sorted.
-        // NOTE: The HandlerMethods object is unsorted.
-        routes = new TreeSet<>(Comparator.comparing(NadRoute::getSortKey));
-        stack = new LinkedHashSet<>();
+        this.pool = pool;
+        classesMap = new ConcurrentHashMap<>();
+        enumsMap = new ConcurrentHashMap<>();
+        modulesMap = new ConcurrentHashMap<>();
+        collectedNames = ConcurrentHashMap.newKeySet();
+        visitedTypes = ConcurrentHashMap.newKeySet();
+        visitedInstances = ThreadLocal.withInitial(() -> Collections.newSetFromMap(new IdentityHashMap<>()));
+        references = new ConcurrentHashMap<>();
+        owner = new ThreadLocal<>();
+        routes = new ConcurrentLinkedQueue<>();
+        pending = new ArrayDeque<>();
+        failure = new AtomicReference<>();
     }
 
     /**
@@ -62,19 +144,76 @@ public class NadContext {
     }
 
     /**
-     * Collect a Class type.
+     * Execute a collecting task.
+     * In single thread mode, the task is queued and run by the outermost call, otherwise it is submitted to the pool.
+     *
+     * @param ownerName The name of the module or definition which the task builds,
+     *                  all types collected by the task are recorded as its references.
+     */
+    private void execute(@NonNull String ownerName, @NonNull Runnable task) {
+        Runnable owned = () -> {
+            String previous = owner.get();
+            owner.set(ownerName);
+            try {
+                task.run();
+            } finally {
+                if (previous == null) owner.remove();
+                else owner.set(previous);
+            }
+        };
+        if (pool != null) {
+            pool.execute(() -> runInContext(owned));
+            return;
+        }
+        pending.add(owned);
+        if (draining) return;
+        draining = true;
+        try {
+            Runnable next;
+            while ((next = pending.poll()) != null) next.run();
+        } finally {
+            draining = false;
+            pending.clear();
+        }
+    }
+
+    /**
+     * Run a task on a pool thread, the context must be bound to the thread while the task is running.
+     * NOTE: The caller thread may also help to run tasks while it is waiting, so the previous context is restored.
+     */
+    private void runInContext(@NonNull Runnable task) {
+        NadContext previous = current.get();
+        current.set(this);
+        try {
+            task.run();
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            if (previous == null) current.remove();
+            else current.set(previous);
+        }
+    }
+
+    /**
+     * Wait for all submitted tasks to finish, and rethrow the first error if there is one.
+     */
+    private void awaitTasks() {
+        if (pool == null) return;
+        pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        Throwable e = failure.get();
+        if (e instanceof RuntimeException) throw (RuntimeException) e;
+        if (e instanceof Error) throw (Error) e;
+        if (e != null) throw new IllegalStateException(e);
+    }
+
+    /**
+     * Collect a Class type (not an array).
      * NOTE: the matchClass method will be called, if a class is excluded by classExcluder, it will not be collected.
      */
     private static void collectClass(@NonNull Class<?> clz) {
         // Don't collect primitive types.
         if (clz.isPrimitive()) return;
 
-        // Find the T of T[].
-        if (clz.isArray()) {
-            collectType(clz.getComponentType());
-            return;
-        }
-
         // It's an enum type.
         if (clz.isEnum()) {
             @SuppressWarnings("unchecked") Class<? extends Enum<?>> aEnum = (Class<? extends Enum<?>>) clz;
@@ -88,12 +227,12 @@ public class NadContext {
         // Now, The clz is a pure Java class type (not an array).
         String name = clz.getTypeName();
 
-        Map<String, NadClass> map = getContext().classesMap;
+        NadContext context = getContext();
 
         // Don't collect it again, if it has been collected.
-        if (map.containsKey(name)) return;
+        if (!context.collectedNames.add(name)) return;
 
-        map.put(name, new NadClassImpl(clz));
+        context.execute(name, () -> context.classesMap.put(name, new NadClassImpl(clz)));
     }
 
     /**
@@ -103,7 +242,15 @@ public class NadContext {
     private static void collectEnum(@NonNull Class<? extends Enum<?>> clz) {
         // Ignore some classes which are matched by ClassFilter.
         if (!matchClass(clz)) return;
-        getContext().enumsMap.computeIfAbsent(clz.getTypeName(), name -> new NadEnumImpl(clz));
+
+        String name = clz.getTypeName();
+
+        NadContext context = getContext();
+
+        // Don't collect it again, if it has been collected.
+        if (!context.collectedNames.add(name)) return;
+
+        context.execute(name, () -> context.enumsMap.put(name, new NadEnumImpl(clz)));
     }
 
     /**
@@ -111,7 +258,10 @@ public class NadContext {
      * NOTE: the matchClass method will be called, if a class is excluded by classExcluder, it will not be collected.
      */
     protected static void collectModule(Class<?> clz) {
-        getContext().modulesMap.computeIfAbsent(clz.getTypeName(), n -> new NadModuleImpl(clz));
+        Map<String, NadModule> modulesMap = getContext().modulesMap;
+        String name = clz.getTypeName();
+        // Don't use computeIfAbsent, the module constructor may collect other types.
+        if (!modulesMap.containsKey(name)) modulesMap.putIfAbsent(name, new NadModuleImpl(clz));
     }
 
     /**
@@ -119,60 +269,154 @@ public class NadContext {
      * NOTE: the matchClass method will be called, if a class is excluded by classExcluder, it will not be collected.
      */
     protected static void collectType(@Nullable Type what) {
-        if (getContext().stack.contains(what)) return;
-        getContext().stack.add(what);
-        try {
+        if (what == null) return;
+        NadContext context = getContext();
+        String ownerName = context.owner.get();
+        if (ownerName != null) {
+            context.references.computeIfAbsent(ownerName, k -> new ConcurrentLinkedQueue<>()).add(what);
+        }
+        walkType(what, context::isVisited, NadContext::collectClass, context::markVisited);
+    }
 
-            // For WildcardType such as `List<? extends Foo>`, or `List<? super Foo>`, we need to collect all bound types.
-            if (what instanceof WildcardType) {
-                WildcardType wt = (WildcardType) what;
-                Arrays.stream(wt.getLowerBounds()).forEach(NadContext::collectType);
-                Arrays.stream(wt.getUpperBounds()).forEach(NadContext::collectType);
-                return;
+    /**
+     * Walk a type graph with an explicit stack of frames instead of recursion.
+     * Each visited type is followed by an exit frame which removes it from the path when all its children are done.
+     *
+     * @param what    The type to walk.
+     * @param skip    Whether a type and its children can be skipped.
+     * @param visitor Called with each Class (not an array) which is found.
+     * @param exit    Called when all children of a type are done.
+     */
+    private static void walkType(@NonNull Type what,
+                                 @NonNull Predicate<Type> skip,
+                                 @NonNull Consumer<Class<?>> visitor,
+                                 @NonNull Consumer<Type> exit) {
+        if (skip.test(what)) return;
+        // The types on the current path, it is used to avoid infinite recursion such as `T extends Comparable<T>`.
+        Set<Type> path = new HashSet<>();
+        Deque<Object> frames = new ArrayDeque<>();
+        frames.push(what);
+        while (!frames.isEmpty()) {
+            Object frame = frames.pop();
+            if (frame instanceof ExitFrame) {
+                Type type = ((ExitFrame) frame).type;
+                path.remove(type);
+                exit.accept(type);
+                continue;
             }
-
-            // For TypeVariable such as `class Demo<T extends Foo>`, we need to collect all bound types.
-            if (what instanceof TypeVariable) {
-                TypeVariable<?> tv = (TypeVariable<?>) what;
-                Arrays.stream(tv.getBounds()).forEach(NadContext::collectType);
-                return;
+            Type type = (Type) frame;
+            if (skip.test(type) || !path.add(type)) continue;
+            frames.push(new ExitFrame(type));
+
+            Type[] children = getChildTypes(type);
+            if (children == null) {
+                visitor.accept((Class<?>) type);
+                continue;
             }
-
-            // For ParameterizedType such as Map<String, Integer>, we need to collect all raw types and type arguments.
-            // For example, collect(A<B, C>) is equals to collect(A), and collect(B), and collect(C).
-            if (what instanceof ParameterizedType) {
-                ParameterizedType pt = (ParameterizedType) what;
-                collectType(pt.getRawType());
-                Arrays.stream(pt.getActualTypeArguments()).forEach(NadContext::collectType);
-                return;
+            // Push in reverse order, so that the children are visited in the declared order.
+            for (int i = children.length - 1; i >= 0; i--) {
+                frames.push(children[i]);
             }
+        }
+    }
 
-            // Find the type of array items, such as find List<Long> from List<Long>[].
-            if (what instanceof GenericArrayType) {
-                collectType(((GenericArrayType) what).getGenericComponentType());
-                return;
-            }
+    /**
+     * Check if a type has been fully walked, by identity first, and then by equals.
+     */
+    private boolean isVisited(@NonNull Type type) {
+        Set<Type> instances = visitedInstances.get();
+        if (instances.contains(type)) return true;
+        if (!visitedTypes.contains(type)) return false;
+        instances.add(type);
+        return true;
+    }
 
-            if (what instanceof Class) {
-                collectClass((Class<?>) what);
-            }
+    private void markVisited(@NonNull Type type) {
+        visitedTypes.add(type);
+        visitedInstances.get().add(type);
+    }
 
-        } finally {
-            getContext().stack.remove(what);
+    /**
+     * Get the types which a type is composed of, or null if it is a Class (not an array) to be collected.
+     */
+    @Nullable
+    private static Type[] getChildTypes(@NonNull Type type) {
+        // For WildcardType such as `List<? extends Foo>`, or `List<? super Foo>`, we need to collect all bound types.
+        if (type instanceof WildcardType) {
+            WildcardType wt = (WildcardType) type;
+            Type[] lower = wt.getLowerBounds();
+            Type[] upper = wt.getUpperBounds();
+            Type[] res = Arrays.copyOf(lower, lower.length + upper.length);
+            System.arraycopy(upper, 0, res, lower.length, upper.length);
+            return res;
+        }
+
+        // For TypeVariable such as `class Demo<T extends Foo>`, we need to collect all bound types.
+        if (type instanceof TypeVariable) {
+            return ((TypeVariable<?>) type).getBounds();
+        }
+
+        // For ParameterizedType such as Map<String, Integer>, we need to collect all raw types and type arguments.
+        // For example, collect(A<B, C>) is equals to collect(A), and collect(B), and collect(C).
+        if (type instanceof ParameterizedType) {
+            ParameterizedType pt = (ParameterizedType) type;
+            Type[] args = pt.getActualTypeArguments();
+            Type[] res = new Type[args.length + 1];
+            res[0] = pt.getRawType();
+            System.arraycopy(args, 0, res, 1, args.length);
+            return res;
         }
+
+        // Find the type of array items, such as find List<Long> from List<Long>[].
+        if (type instanceof GenericArrayType) {
+            return new Type[]{((GenericArrayType) type).getGenericComponentType()};
+        }
+
+        if (type instanceof Class) {
+            Class<?> clz = (Class<?>) type;
+            // Find the T of T[].
+            if (clz.isArray()) return new Type[]{clz.getComponentType()};
+            return null;
+        }
+
+        // Unknown implementations of Type are ignored.
+        return new Type[0];
     }
 
     /**
      * Collect a route, you must first create a NadRoute object within the NadContext transaction.
      */
     public static void collectRoute(@Nullable NadRoute route) {
-        Optional.ofNullable(route).ifPresent(getContext().routes::add);
+        Optional.ofNullable(route).map(SortedRoute::new).ifPresent(getContext().routes::add);
     }
 
+    /**
+     * Collect all routes of a RequestMappingHandlerMapping.
+     * NOTE: In parallel mode, each route is created by a separate task.
+     */
     public static void collectSpringWeb(@NonNull RequestMappingHandlerMapping mapping) {
+        collectSpringWeb(mapping, name -> true);
+    }
+
+    /**
+     * Collect the routes of some modules (controller classes) of a RequestMappingHandlerMapping,
+     * which is used to recollect the changed modules only.
+     */
+    public static void collectSpringWeb(@NonNull RequestMappingHandlerMapping mapping, @NonNull Collection<String> modules) {
+        Set<String> names = new HashSet<>(modules);
+        collectSpringWeb(mapping, names::contains);
+    }
+
+    private static void collectSpringWeb(@NonNull RequestMappingHandlerMapping mapping, @NonNull Predicate<String> module) {
+        NadContext context = getContext();
         mapping.getHandlerMethods().entrySet().stream()
+                .filter(e -> module.test(e.getValue().getBeanType().getTypeName()))
                 // Ignore some classes who are specified by ClassExcluder
-                .filter(e -> NadContext.matchClass(e.getValue().getBeanType())).map(e -> new NadRouterSpringWeb(e.getKey(), e.getValue())).forEach(NadContext::collectRoute);
+                .filter(e -> NadContext.matchClass(e.getValue().getBeanType()))
+                .forEach(e -> context.execute(
+                        e.getValue().getBeanType().getTypeName(),
+                        () -> collectRoute(new NadRouterSpringWeb(e.getKey(), e.getValue()))
+                ));
     }
 
     /**
@@ -210,16 +454,41 @@ public class NadContext {
     public static <R> R run(@NonNull Supplier<R> transaction,
                             @Nullable ClassFilter classExcluder,
                             @Nullable Predicate<Method> importantMethodMatcher) {
+        return run(transaction, classExcluder, importantMethodMatcher, 1);
+    }
+
+    /**
+     * Execute a transaction within a NadContext.
+     * If the parallelism is greater than 1, routes and types will be collected by a dedicated ForkJoinPool,
+     * and the dump method will wait for all of them. The result is the same as the single thread mode.
+     * NOTE: context information is stored in a ThreadLocal, do not call this method recursively.
+     *
+     * @param parallelism The parallelism level of the pool, a value less than 2 means running in current thread.
+     */
+    public static <R> R run(@NonNull Supplier<R> transaction,
+                            @Nullable ClassFilter classExcluder,
+                            @Nullable Predicate<Method> importantMethodMatcher,
+                            int parallelism) {
         R res;
+        NadContext context = null;
         try {
             if (current.get() != null) {
                 throw new NadContextRecursionException();
             }
-            current.set(new NadContext(classExcluder, importantMethodMatcher));
+            ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+            context = new NadContext(classExcluder, importantMethodMatcher, pool);
+            current.set(context);
             // if this code returns directly, the "finally" block will not be covered by junit coverage.
             res = transaction.get();
+            // The transaction may not call dump, but all submitted tasks must be finished before leaving.
+            context.awaitTasks();
         } finally {
             current.remove();
+            if (context != null) {
+                context.visitedInstances.remove();
+                context.owner.remove();
+                if (context.pool != null) context.pool.shutdownNow();
+            }
         }
         return res;
     }
@@ -230,7 +499,126 @@ public class NadContext {
     @NonNull
     public static NadResult dump() {
         NadContext context = getContext();
-        return new NadResultImpl(new ArrayList<>(context.modulesMap.values()), new ArrayList<>(context.routes), new ArrayList<>(context.classesMap.values()), new ArrayList<>(context.enumsMap.values()));
+        context.awaitTasks();
+        return new NadResultImpl(context.sortedValues(context.modulesMap), context.sortedRoutes(), context.sortedValues(context.classesMap), context.sortedValues(context.enumsMap));
+    }
+
+    /**
+     * Write all information of current context as the JSON of a NadResult, without materializing a NadResult.
+     * The definitions are written by NadJsonWriter one after another in the same order as the dump method,
+     * so the output is the same as the result of the dump method written by NadJsonWriter.
+     * Each definition is released from the context once it is written, so the heap holds the sorted names and the
+     * definitions not written yet, rather than the definitions and their output at the same time.
+     * NOTE: The context is drained by this method, call dumpDependencies before it if the graph is also needed.
+     *
+     * @param generator The generator to write to, it is flushed but not closed.
+     */
+    public static void dump(@NonNull JsonGenerator generator) throws IOException {
+        NadContext context = getContext();
+        context.awaitTasks();
+        NadJsonWriter writer = NadJsonWriter.of(generator);
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("modules");
+        for (String name : context.sortedNames(context.modulesMap)) writer.writeModule(context.modulesMap.remove(name));
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("routes");
+        List<NadRoute> routes = context.sortedRoutes();
+        context.routes.clear();
+        for (int i = 0; i < routes.size(); i++) {
+            writer.writeRoute(routes.get(i));
+            routes.set(i, null);
+        }
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("classes");
+        for (String name : context.sortedNames(context.classesMap)) writer.writeClass(context.classesMap.remove(name));
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("enums");
+        for (String name : context.sortedNames(context.enumsMap)) writer.writeEnum(context.enumsMap.remove(name));
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    /**
+     * Dump the dependency graph of current context.
+     * The keys are names of modules, classes and enums, the values are sorted names of classes and enums
+     * which are directly referenced by them. Excluded classes never appear in the graph.
+     * NOTE: Routes are owned by their modules, so a module depends on the types of its routes.
+     */
+    @NonNull
+    public static Map<String, List<String>> dumpDependencies() {
+        NadContext context = getContext();
+        context.awaitTasks();
+        Map<Type, Set<String>> cache = new HashMap<>();
+        Map<String, List<String>> res = new TreeMap<>();
+        context.references.forEach((ownerName, types) -> {
+            Set<String> names = new TreeSet<>();
+            for (Type type : types) names.addAll(cache.computeIfAbsent(type, context::getDefinitionNames));
+            names.remove(ownerName);
+            res.put(ownerName, new ArrayList<>(names));
+        });
+        return res;
+    }
+
+    /**
+     * Find the names of collected classes and enums in a type, such as `Foo` and `Bar` in `Map<Foo, List<Bar>>`.
+     */
+    @NonNull
+    private Set<String> getDefinitionNames(@NonNull Type type) {
+        Set<String> names = new HashSet<>();
+        walkType(type, t -> false, clz -> {
+            String name = clz.getTypeName();
+            if (classesMap.containsKey(name) || enumsMap.containsKey(name)) names.add(name);
+        }, t -> {
+        });
+        return names;
+    }
+
+    /**
+     * Sort an array, in parallel if the context runs in parallel mode.
+     * NOTE: Both sorting algorithms are stable.
+     */
+    private <T> void sort(@NonNull T[] array, @NonNull Comparator<? super T> comparator) {
+        if (pool == null) Arrays.sort(array, comparator);
+        else Arrays.parallelSort(array, comparator);
+    }
+
+    @NonNull
+    private String[] sortedNames(@NonNull Map<String, ?> map) {
+        String[] names = map.keySet().toArray(new String[0]);
+        sort(names, Comparator.naturalOrder());
+        return names;
+    }
+
+    /**
+     * Get values of a definition map sorted by their names.
+     */
+    @NonNull
+    private <T> List<T> sortedValues(@NonNull Map<String, T> map) {
+        String[] names = sortedNames(map);
+        List<T> list = new ArrayList<>(names.length);
+        for (String name : names) list.add(map.get(name));
+        return list;
+    }
+
+    /**
+     * To ensure that uniformity of the results, it is necessary to be sorted.
+     * NOTE: The HandlerMethods object is unsorted.
+     * Routes with the same sort key (such as a handler method registered with several mappings) are collected only
+     * once, and the first one by their route info is kept, so the result never depends on the order of collection.
+     */
+    @NonNull
+    private List<NadRoute> sortedRoutes() {
+        SortedRoute[] array = routes.toArray(new SortedRoute[0]);
+        sort(array, ROUTE_ORDER);
+        List<NadRoute> list = new ArrayList<>(array.length);
+        String last = null;
+        for (SortedRoute item : array) {
+            if (item.key.equals(last)) continue;
+            last = item.key;
+            list.add(item.route);
+        }
+        return list;
     }
 
     /**
@@ -241,6 +629,46 @@ public class NadContext {
      */
     public static String cc(Type type) {
         collectType(type);
-        return type.getTypeName();
+        return NadPools.typeNames.intern(type.getTypeName());
+    }
+
+    /**
+     * A frame of the walkType method which marks that all children of the type have been visited.
+     */
+    private static final class ExitFrame {
+        @NonNull
+        private final Type type;
+
+        private ExitFrame(@NonNull Type type) {
+            this.type = type;
+        }
+    }
+
+    @NonNull
+    private static String describeInfo(@NonNull NadRouteInfo info) {
+        StringBuilder sb = new StringBuilder()
+                .append(info.getMethods()).append(' ')
+                .append(info.getPatterns()).append(' ');
+        for (NameValuePair header : info.getHeaders()) {
+            sb.append(header.getName()).append(header.isNegated() ? "!=" : "=").append(header.getValue()).append(',');
+        }
+        return sb.append(' ').append(info.getConsumes())
+                .append(' ').append(info.getProduces())
+                .append(' ').append(info.getCustomFlags()).toString();
+    }
+
+    /**
+     * A collected route with its sort key, the key is computed only once when the route is collected.
+     */
+    private static final class SortedRoute {
+        @NonNull
+        private final String key;
+        @NonNull
+        private final NadRoute route;
+
+        private SortedRoute(@NonNull NadRoute route) {
+            this.key = NadRoute.getSortKey(route);
+            this.route = route;
+        }
     }
 }
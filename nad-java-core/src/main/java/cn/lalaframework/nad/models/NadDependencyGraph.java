@@ -0,0 +1,180 @@
+package cn.lalaframework.nad.models;
+
+import cn.lalaframework.nad.interfaces.*;
+import org.springframework.lang.NonNull;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * An index of a NadResult and its dependency graph, which is used to take self-contained subsets of modules.
+ * All lookups are prepared in the constructor, so a subset costs time proportional to its size.
+ */
+public class NadDependencyGraph {
+    @NonNull
+    private final NadResult result;
+
+    @NonNull
+    private final Map<String, NadModule> modules;
+
+    @NonNull
+    private final Map<String, NadClass> classes;
+
+    @NonNull
+    private final Map<String, NadEnum> enums;
+
+    /**
+     * The routes of each module, with their indexes in the original result.
+     */
+    @NonNull
+    private final Map<String, List<Map.Entry<Integer, NadRoute>>> routes;
+
+    @NonNull
+    private final Map<String, List<String>> dependencies;
+
+    /**
+     * @param result       A result dumped by NadContext.
+     * @param dependencies The dependency graph dumped by NadContext in the same transaction.
+     */
+    public NadDependencyGraph(@NonNull NadResult result, @NonNull Map<String, List<String>> dependencies) {
+        this.result = result;
+        this.dependencies = dependencies;
+        modules = new HashMap<>();
+        result.getModules().forEach(i -> modules.put(i.getName(), i));
+        classes = new HashMap<>();
+        result.getClasses().forEach(i -> classes.put(i.getName(), i));
+        enums = new HashMap<>();
+        result.getEnums().forEach(i -> enums.put(i.getName(), i));
+        routes = new HashMap<>();
+        List<NadRoute> list = result.getRoutes();
+        for (int i = 0; i < list.size(); i++) {
+            NadRoute route = list.get(i);
+            routes.computeIfAbsent(route.getBean(), k -> new ArrayList<>())
+                    .add(new AbstractMap.SimpleImmutableEntry<>(i, route));
+        }
+    }
+
+    /**
+     * Get the full result.
+     */
+    @NonNull
+    public NadResult getResult() {
+        return result;
+    }
+
+    /**
+     * Get the names of classes and enums which are reachable from the specified modules or definitions.
+     */
+    @NonNull
+    public SortedSet<String> getClosure(@NonNull Collection<String> names) {
+        return getClosure(names, dependencies, name -> classes.containsKey(name) || enums.containsKey(name));
+    }
+
+    @NonNull
+    private static SortedSet<String> getClosure(@NonNull Collection<String> names,
+                                                @NonNull Map<String, List<String>> dependencies,
+                                                @NonNull Predicate<String> isDefinition) {
+        SortedSet<String> res = new TreeSet<>();
+        Set<String> visited = new HashSet<>(names);
+        Deque<String> queue = new ArrayDeque<>(visited);
+        while (!queue.isEmpty()) {
+            String name = queue.poll();
+            if (isDefinition.test(name)) res.add(name);
+            for (String dependency : dependencies.getOrDefault(name, Collections.emptyList())) {
+                if (visited.add(dependency)) queue.add(dependency);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Replace some modules with a partial graph which is collected from only these modules in another transaction.
+     * The other modules and their routes are kept as they are, and so are the definitions which are not
+     * in the partial graph. Definitions which are no longer reachable from any module are dropped.
+     * NOTE: The merged result is sorted in the same way as a result dumped by NadContext.
+     *
+     * @param partial     A graph collected from the specified modules, such as by NadContext.collectSpringWeb.
+     * @param moduleNames The names of replaced modules, including the removed ones which are absent in the partial graph.
+     */
+    @NonNull
+    public NadDependencyGraph merge(@NonNull NadDependencyGraph partial, @NonNull Collection<String> moduleNames) {
+        Set<String> replaced = new HashSet<>(moduleNames);
+        replaced.addAll(partial.modules.keySet());
+
+        SortedMap<String, NadModule> nextModules = new TreeMap<>(partial.modules);
+        modules.forEach((name, module) -> {
+            if (!replaced.contains(name)) nextModules.put(name, module);
+        });
+
+        List<Map.Entry<String, NadRoute>> entries = new ArrayList<>();
+        for (NadRoute route : result.getRoutes()) {
+            if (!replaced.contains(route.getBean())) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(NadRoute.getSortKey(route), route));
+            }
+        }
+        for (NadRoute route : partial.result.getRoutes()) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(NadRoute.getSortKey(route), route));
+        }
+        entries.sort(Map.Entry.comparingByKey());
+        List<NadRoute> nextRoutes = new ArrayList<>(entries.size());
+        entries.forEach(i -> nextRoutes.add(i.getValue()));
+
+        Map<String, List<String>> merged = new HashMap<>(dependencies);
+        replaced.forEach(merged::remove);
+        merged.putAll(partial.dependencies);
+        SortedSet<String> closure = getClosure(nextModules.keySet(), merged, name ->
+                partial.classes.containsKey(name) || partial.enums.containsKey(name)
+                        || classes.containsKey(name) || enums.containsKey(name));
+
+        List<NadClass> nextClasses = new ArrayList<>();
+        List<NadEnum> nextEnums = new ArrayList<>();
+        Map<String, List<String>> nextDependencies = new TreeMap<>();
+        for (String name : closure) {
+            NadClass clz = partial.classes.getOrDefault(name, classes.get(name));
+            if (clz != null) nextClasses.add(clz);
+            else nextEnums.add(partial.enums.getOrDefault(name, enums.get(name)));
+            List<String> list = merged.get(name);
+            if (list != null) nextDependencies.put(name, list);
+        }
+        for (String name : nextModules.keySet()) {
+            List<String> list = merged.get(name);
+            if (list != null) nextDependencies.put(name, list);
+        }
+
+        NadResult nextResult = new NadResultImpl(new ArrayList<>(nextModules.values()), nextRoutes, nextClasses, nextEnums);
+        return new NadDependencyGraph(nextResult, nextDependencies);
+    }
+
+    /**
+     * Take a self-contained subset which holds the specified modules, their routes,
+     * and only the classes and enums reachable from them. Unknown module names are ignored.
+     * NOTE: Items are in the same order as the original result.
+     */
+    @NonNull
+    public NadResult subset(@NonNull Collection<String> moduleNames) {
+        SortedSet<String> names = new TreeSet<>();
+        for (String name : moduleNames) {
+            if (modules.containsKey(name)) names.add(name);
+        }
+
+        List<NadModule> subModules = new ArrayList<>(names.size());
+        List<Map.Entry<Integer, NadRoute>> entries = new ArrayList<>();
+        for (String name : names) {
+            subModules.add(modules.get(name));
+            entries.addAll(routes.getOrDefault(name, Collections.emptyList()));
+        }
+        entries.sort(Map.Entry.comparingByKey());
+        List<NadRoute> subRoutes = new ArrayList<>(entries.size());
+        entries.forEach(i -> subRoutes.add(i.getValue()));
+
+        List<NadClass> subClasses = new ArrayList<>();
+        List<NadEnum> subEnums = new ArrayList<>();
+        for (String name : getClosure(names)) {
+            NadClass clz = classes.get(name);
+            if (clz != null) subClasses.add(clz);
+            else subEnums.add(enums.get(name));
+        }
+
+        return new NadResultImpl(subModules, subRoutes, subClasses, subEnums);
+    }
+}
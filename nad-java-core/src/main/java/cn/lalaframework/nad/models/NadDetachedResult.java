@@ -0,0 +1,566 @@
+package cn.lalaframework.nad.models;
+
+import cn.lalaframework.nad.interfaces.*;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.lang.annotation.Annotation;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * A detached copy of a NadResult, which holds nothing but strings, numbers, booleans and immutable lists, maps and
+ * records of them, so that a cached result never pins the classes (and the ClassLoader) of the application.
+ * The only exception is the value of an enum constant, which is held weakly, see plainValueOf.
+ * <p>
+ * 1. The annotation attributes are converted in the same way as NadJsonWriter writes them: a Class or an enum is
+ * converted into its name, an array or a collection into a list, and a nested annotation into a map of
+ * { type, attributes }.
+ * 2. The enum constant values and the property values of other types are application values, they are converted by
+ * the given mapper (such as the ObjectMapper of the host application), otherwise an enum is converted into its name
+ * and any other value into its string.
+ * 3. The annotations, the lists of them and the members which are shared by the original definitions are still
+ * shared by the detached ones.
+ */
+public final class NadDetachedResult implements NadResult {
+    @NonNull
+    private final List<NadModule> modules;
+    @NonNull
+    private final List<NadRoute> routes;
+    @NonNull
+    private final List<NadClass> classes;
+    @NonNull
+    private final List<NadEnum> enums;
+
+    private NadDetachedResult(@NonNull List<NadModule> modules, @NonNull List<NadRoute> routes,
+                              @NonNull List<NadClass> classes, @NonNull List<NadEnum> enums) {
+        this.modules = modules;
+        this.routes = routes;
+        this.classes = classes;
+        this.enums = enums;
+    }
+
+    /**
+     * Detach a result, the items are kept in the same order.
+     *
+     * @param result      A result, such as the one dumped by NadContext.
+     * @param valueMapper The mapper of application values, which converts a value into plain data (a string,
+     *                    a number, a boolean, a list or a map of them), or null to convert a value into its name
+     *                    (an enum) or its string.
+     */
+    @NonNull
+    public static NadResult detach(@NonNull NadResult result, @Nullable Function<Object, Object> valueMapper) {
+        return detach(result, valueMapper, true);
+    }
+
+    /**
+     * Detach a result, and optionally omit all annotations, so that it is serialized without annotations by any
+     * serializer, in the same way as NadJsonWriter.withoutAnnotations writes it.
+     *
+     * @param result      A result, either the one dumped by NadContext or a detached one.
+     * @param valueMapper The mapper of application values, see detach(NadResult, Function).
+     * @param annotations Whether to keep the annotations, otherwise every list of annotations is empty.
+     */
+    @NonNull
+    public static NadResult detach(@NonNull NadResult result, @Nullable Function<Object, Object> valueMapper,
+                                   boolean annotations) {
+        if (annotations && result instanceof NadDetachedResult) return result;
+        return new Detacher(valueMapper, annotations).detach(result);
+    }
+
+    /**
+     * Get the value of an enum constant as plain data, which is converted by the value mapper if the constant is
+     * detached, otherwise it is the enum itself.
+     * A detached constant still returns the enum by getValue, as long as the enum class is loaded.
+     */
+    @Nullable
+    public static Object plainValueOf(@NonNull NadEnumConstant constant) {
+        if (constant instanceof EnumConstant) return ((EnumConstant) constant).value;
+        return constant.getValue();
+    }
+
+    @Override
+    @NonNull
+    public List<NadModule> getModules() {
+        return modules;
+    }
+
+    @Override
+    @NonNull
+    public List<NadRoute> getRoutes() {
+        return routes;
+    }
+
+    @Override
+    @NonNull
+    public List<NadClass> getClasses() {
+        return classes;
+    }
+
+    @Override
+    @NonNull
+    public List<NadEnum> getEnums() {
+        return enums;
+    }
+
+    @NonNull
+    private static <T> List<T> immutable(@NonNull List<T> list) {
+        if (list.isEmpty()) return Collections.emptyList();
+        if (list.size() == 1) return Collections.singletonList(list.get(0));
+        return Collections.unmodifiableList(new ArrayList<>(list));
+    }
+
+    @NonNull
+    private static <T, R> List<R> map(@NonNull List<T> list, @NonNull Function<T, R> mapper) {
+        if (list.isEmpty()) return Collections.emptyList();
+        List<R> res = new ArrayList<>(list.size());
+        for (T item : list) res.add(mapper.apply(item));
+        return immutable(res);
+    }
+
+    /**
+     * The conversion of a result, the shared values are converted only once.
+     */
+    private static final class Detacher {
+        @Nullable
+        private final Function<Object, Object> valueMapper;
+
+        private final boolean keepsAnnotations;
+
+        @NonNull
+        private final Map<NadAnnotation, NadAnnotation> annotations = new HashMap<>();
+
+        @NonNull
+        private final Map<List<NadAnnotation>, List<NadAnnotation>> annotationLists = new IdentityHashMap<>();
+
+        @NonNull
+        private final Map<NadMember, NadMember> members = new IdentityHashMap<>();
+
+        @NonNull
+        private final Map<NadParameter, NadParameter> parameters = new IdentityHashMap<>();
+
+        Detacher(@Nullable Function<Object, Object> valueMapper, boolean keepsAnnotations) {
+            this.valueMapper = valueMapper;
+            this.keepsAnnotations = keepsAnnotations;
+        }
+
+        @NonNull
+        NadResult detach(@NonNull NadResult result) {
+            return new NadDetachedResult(
+                    map(result.getModules(), i -> new Module(i.getName(), annotations(i.getAnnotations()))),
+                    map(result.getRoutes(), Route::new),
+                    map(result.getClasses(), ClassDef::new),
+                    map(result.getEnums(), EnumDef::new)
+            );
+        }
+
+        @Nullable
+        private List<NadAnnotation> annotations(@Nullable List<NadAnnotation> list) {
+            if (list == null) return null;
+            if (!keepsAnnotations) return Collections.emptyList();
+            List<NadAnnotation> res = annotationLists.get(list);
+            if (res == null) {
+                res = map(list, this::annotation);
+                annotationLists.put(list, res);
+            }
+            return res;
+        }
+
+        @NonNull
+        private NadAnnotation annotation(@NonNull NadAnnotation annotation) {
+            NadAnnotation res = annotations.get(annotation);
+            if (res == null) {
+                res = new AnnotationRecord(annotation.getType(), attributes(annotation.getAttributes(), false));
+                annotations.put(annotation, res);
+            }
+            return res;
+        }
+
+        @NonNull
+        private Map<String, Object> attributes(@NonNull Map<String, Object> attributes, boolean isApplicationValue) {
+            if (attributes.isEmpty()) return Collections.emptyMap();
+            Map<String, Object> res = new LinkedHashMap<>(attributes.size() * 4 / 3 + 1);
+            for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+                res.put(entry.getKey(), plain(entry.getValue(), isApplicationValue));
+            }
+            return Collections.unmodifiableMap(res);
+        }
+
+        @NonNull
+        private NadMember member(@NonNull NadMember member) {
+            return members.computeIfAbsent(member, k -> new NadMemberImpl(k.getName(), k.getType(),
+                    map(k.getAnnotations(), this::annotations)));
+        }
+
+        @NonNull
+        private NadParameter parameter(@NonNull NadParameter parameter) {
+            return parameters.computeIfAbsent(parameter, k -> new Parameter(k, annotations(k.getAnnotations())));
+        }
+
+        /**
+         * Convert an application value by the mapper, and make sure that the result is plain data.
+         */
+        @Nullable
+        private Object applicationValue(@NonNull Object value) {
+            if (valueMapper != null) return plain(valueMapper.apply(value), false);
+            return value instanceof Enum ? ((Enum<?>) value).name() : value.toString();
+        }
+
+        /**
+         * Convert a value into plain data, in the same way as NadJsonWriter.writeValue writes it.
+         *
+         * @param isApplicationValue Whether a value of an unknown type is an application value,
+         *                           otherwise it is converted into its string.
+         */
+        @Nullable
+        private Object plain(@Nullable Object value, boolean isApplicationValue) {
+            if (value == null || value instanceof String || value instanceof Boolean
+                    || value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte
+                    || value instanceof Double || value instanceof Float
+                    || value instanceof BigDecimal || value instanceof BigInteger) {
+                return value;
+            } else if (value instanceof Character) {
+                return value.toString();
+            } else if (value instanceof Class) {
+                return ((Class<?>) value).getName();
+            } else if (value instanceof Annotation) {
+                Annotation annotation = (Annotation) value;
+                Map<String, Object> res = new LinkedHashMap<>(4);
+                res.put("type", annotation.annotationType().getTypeName());
+                res.put("attributes", attributes(AnnotationUtils.getAnnotationAttributes(annotation), false));
+                return Collections.unmodifiableMap(res);
+            } else if (value.getClass().isArray()) {
+                int length = Array.getLength(value);
+                List<Object> res = new ArrayList<>(length);
+                for (int i = 0; i < length; i++) res.add(plain(Array.get(value, i), isApplicationValue));
+                return immutable(res);
+            } else if (value instanceof Collection) {
+                List<Object> res = new ArrayList<>(((Collection<?>) value).size());
+                for (Object item : (Collection<?>) value) res.add(plain(item, isApplicationValue));
+                return immutable(res);
+            } else if (value instanceof Map) {
+                Map<String, Object> res = new LinkedHashMap<>();
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    res.put(String.valueOf(entry.getKey()), plain(entry.getValue(), isApplicationValue));
+                }
+                return Collections.unmodifiableMap(res);
+            } else if (isApplicationValue) {
+                return applicationValue(value);
+            } else if (value instanceof Enum) {
+                return ((Enum<?>) value).name();
+            } else {
+                return value.toString();
+            }
+        }
+
+        private class Method extends NadDefImpl implements NadMethod {
+            @NonNull
+            private final List<String> typeParameters;
+            @NonNull
+            private final String returnType;
+            @NonNull
+            private final List<NadParameter> parameters;
+            private final int modifiers;
+
+            Method(@NonNull NadMethod method) {
+                super(method.getName(), annotations(method.getAnnotations()));
+                typeParameters = immutable(method.getTypeParameters());
+                returnType = method.getReturnType();
+                parameters = map(method.getParameters(), Detacher.this::parameter);
+                modifiers = method.getModifiers();
+            }
+
+            @Override
+            @NonNull
+            public List<String> getTypeParameters() {
+                return typeParameters;
+            }
+
+            @Override
+            @NonNull
+            public String getReturnType() {
+                return returnType;
+            }
+
+            @Override
+            @NonNull
+            public List<NadParameter> getParameters() {
+                return parameters;
+            }
+
+            @Override
+            public int getModifiers() {
+                return modifiers;
+            }
+        }
+
+        private final class Route extends Method implements NadRoute {
+            @NonNull
+            private final String bean;
+            @NonNull
+            private final List<String> methods;
+            @NonNull
+            private final List<String> patterns;
+            @NonNull
+            private final List<NameValuePair> headers;
+            @NonNull
+            private final List<String> consumes;
+            @NonNull
+            private final List<String> produces;
+            @NonNull
+            private final List<String> customFlags;
+
+            Route(@NonNull NadRoute route) {
+                super(route);
+                bean = route.getBean();
+                methods = immutable(route.getMethods());
+                patterns = immutable(route.getPatterns());
+                headers = immutable(route.getHeaders());
+                consumes = immutable(route.getConsumes());
+                produces = immutable(route.getProduces());
+                customFlags = immutable(route.getCustomFlags());
+            }
+
+            @Override
+            @NonNull
+            public String getBean() {
+                return bean;
+            }
+
+            @Override
+            @NonNull
+            public List<String> getMethods() {
+                return methods;
+            }
+
+            @Override
+            @NonNull
+            public List<String> getPatterns() {
+                return patterns;
+            }
+
+            @Override
+            @NonNull
+            public List<NameValuePair> getHeaders() {
+                return headers;
+            }
+
+            @Override
+            @NonNull
+            public List<String> getConsumes() {
+                return consumes;
+            }
+
+            @Override
+            @NonNull
+            public List<String> getProduces() {
+                return produces;
+            }
+
+            @Override
+            @NonNull
+            public List<String> getCustomFlags() {
+                return customFlags;
+            }
+        }
+
+        private final class ClassDef extends NadDefImpl implements NadClass {
+            @Nullable
+            private final String superclass;
+            @NonNull
+            private final List<NadMember> members;
+            @NonNull
+            private final List<String> typeParameters;
+            @NonNull
+            private final List<String> interfaces;
+            @NonNull
+            private final List<String> innerClasses;
+            @NonNull
+            private final List<NadMethod> importantMethods;
+            private final int modifiers;
+
+            ClassDef(@NonNull NadClass clz) {
+                super(clz.getName(), annotations(clz.getAnnotations()));
+                superclass = clz.getSuperclass();
+                members = map(clz.getMembers(), Detacher.this::member);
+                typeParameters = immutable(clz.getTypeParameters());
+                interfaces = immutable(clz.getInterfaces());
+                innerClasses = immutable(clz.getInnerClasses());
+                importantMethods = map(clz.getImportantMethods(), Method::new);
+                modifiers = clz.getModifiers();
+            }
+
+            @Override
+            @Nullable
+            public String getSuperclass() {
+                return superclass;
+            }
+
+            @Override
+            @NonNull
+            public List<NadMember> getMembers() {
+                return members;
+            }
+
+            @Override
+            @NonNull
+            public List<String> getTypeParameters() {
+                return typeParameters;
+            }
+
+            @Override
+            @NonNull
+            public List<String> getInterfaces() {
+                return interfaces;
+            }
+
+            @Override
+            @NonNull
+            public List<String> getInnerClasses() {
+                return innerClasses;
+            }
+
+            @Override
+            @NonNull
+            public List<NadMethod> getImportantMethods() {
+                return importantMethods;
+            }
+
+            @Override
+            public int getModifiers() {
+                return modifiers;
+            }
+        }
+
+        private final class EnumDef extends NadDefImpl implements NadEnum {
+            @NonNull
+            private final List<NadEnumConstant> constants;
+
+            EnumDef(@NonNull NadEnum nadEnum) {
+                super(nadEnum.getName(), annotations(nadEnum.getAnnotations()));
+                constants = map(nadEnum.getConstants(), i -> {
+                    if (i instanceof EnumConstant) {
+                        // A detached constant is already plain data, and its enum may have been unloaded.
+                        EnumConstant c = (EnumConstant) i;
+                        return new EnumConstant(c.getName(), annotations(c.getAnnotations()), c.properties, c.value, c.constant);
+                    }
+                    Enum<?> constant = i.getValue();
+                    return new EnumConstant(i.getName(), annotations(i.getAnnotations()),
+                            attributes(i.getProperties(), true), applicationValue(constant), new WeakReference<>(constant));
+                });
+            }
+
+            @Override
+            @NonNull
+            public List<NadEnumConstant> getConstants() {
+                return constants;
+            }
+        }
+    }
+
+    private static final class Module extends NadDefImpl implements NadModule {
+        Module(@NonNull String name, @NonNull List<NadAnnotation> annotations) {
+            super(name, annotations);
+        }
+    }
+
+    private static final class Parameter extends NadDefImpl implements NadParameter {
+        @NonNull
+        private final String type;
+
+        Parameter(@NonNull NadParameter parameter, @NonNull List<NadAnnotation> annotations) {
+            super(parameter.getName(), annotations);
+            type = parameter.getType();
+        }
+
+        @Override
+        @NonNull
+        public String getType() {
+            return type;
+        }
+    }
+
+    private static final class EnumConstant extends NadDefImpl implements NadEnumConstant {
+        @NonNull
+        private final Map<String, Object> properties;
+        @Nullable
+        private final Object value;
+        /**
+         * The enum itself, which is transient so that it is never serialized by the fields.
+         */
+        @NonNull
+        private final transient WeakReference<Enum<?>> constant;
+
+        EnumConstant(@NonNull String name, @NonNull List<NadAnnotation> annotations,
+                     @NonNull Map<String, Object> properties, @Nullable Object value,
+                     @NonNull WeakReference<Enum<?>> constant) {
+            super(name, annotations);
+            this.properties = properties;
+            this.value = value;
+            this.constant = constant;
+        }
+
+        @Override
+        @NonNull
+        public Map<String, Object> getProperties() {
+            return properties;
+        }
+
+        /**
+         * @throws IllegalStateException If the enum class has been unloaded, use plainValueOf instead.
+         */
+        @Override
+        @NonNull
+        public <E extends Enum<E>> E getValue() {
+            @SuppressWarnings("unchecked")
+            E res = (E) constant.get();
+            if (res == null) throw new IllegalStateException("The enum of " + getName() + " has been unloaded");
+            return res;
+        }
+    }
+
+    /**
+     * An annotation whose attributes are plain data.
+     */
+    private static final class AnnotationRecord implements NadAnnotation {
+        @NonNull
+        private final String type;
+        @NonNull
+        private final Map<String, Object> attributes;
+
+        AnnotationRecord(@NonNull String type, @NonNull Map<String, Object> attributes) {
+            this.type = type;
+            this.attributes = attributes;
+        }
+
+        @Override
+        @NonNull
+        public String getType() {
+            return type;
+        }
+
+        @Override
+        @NonNull
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof AnnotationRecord)) return false;
+            AnnotationRecord that = (AnnotationRecord) o;
+            return type.equals(that.type) && attributes.equals(that.attributes);
+        }
+
+        @Override
+        public int hashCode() {
+            return type.hashCode() * 31 + attributes.hashCode();
+        }
+    }
+}
@@ -3,6 +3,7 @@ package cn.lalaframework.nad.models;
 import cn.lalaframework.nad.interfaces.NadAnnotation;
 import cn.lalaframework.nad.interfaces.NadEnumConstant;
 import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
 import org.springframework.util.ReflectionUtils;
 
 import java.lang.reflect.Field;
@@ -21,6 +22,14 @@ public class NadEnumConstantImpl extends NadDefImpl implements NadEnumConstant {
     private final Map<String, Object> properties;
 
     public NadEnumConstantImpl(@NonNull Enum<?> enumValue, @NonNull List<Field> fields) {
+        this(enumValue, fields, null);
+    }
+
+    /**
+     * @param referencedTypes If it is not null, the property values which are types are added to this list
+     *                        instead of being collected, and the caller is responsible to collect them.
+     */
+    NadEnumConstantImpl(@NonNull Enum<?> enumValue, @NonNull List<Field> fields, @Nullable List<Type> referencedTypes) {
         super(enumValue.name(), initAnnotations(enumValue));
         this.value = enumValue;
         properties = new TreeMap<>(String::compareTo);
@@ -28,7 +37,10 @@ public class NadEnumConstantImpl extends NadDefImpl implements NadEnumConstant {
         fields.forEach(field -> {
             try {
                 Object fieldValue = ReflectionUtils.getField(field, enumValue);
-                if (fieldValue instanceof Type) NadContext.collectType((Type) fieldValue);
+                if (fieldValue instanceof Type) {
+                    if (referencedTypes != null) referencedTypes.add((Type) fieldValue);
+                    else NadContext.collectType((Type) fieldValue);
+                }
                 properties.put(field.getName(), fieldValue);
             } catch (IllegalStateException ignored) {
                 // Some internal properties cannot be read.
@@ -0,0 +1,80 @@
+package cn.lalaframework.nad.models;
+
+import cn.lalaframework.nad.interfaces.NadAnnotation;
+import cn.lalaframework.nad.interfaces.NadEnumConstant;
+import org.springframework.lang.NonNull;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The class-intrinsic parts of a NadEnum, they are cached by a ClassValue like NadClassShape.
+ * NOTE: The properties of constants are read only once, so they are expected to be immutable.
+ */
+final class NadEnumShape {
+    private static final ClassValue<NadEnumShape> cache = new ClassValue<NadEnumShape>() {
+        @Override
+        protected NadEnumShape computeValue(Class<?> type) {
+            @SuppressWarnings("unchecked") Class<? extends Enum<?>> aEnum = (Class<? extends Enum<?>>) type;
+            return new NadEnumShape(aEnum);
+        }
+    };
+
+    @NonNull
+    private final List<NadAnnotation> annotations;
+
+    @NonNull
+    private final List<NadEnumConstant> constants;
+
+    @NonNull
+    private final List<Type> referencedTypes;
+
+    private NadEnumShape(@NonNull Class<? extends Enum<?>> clz) {
+        annotations = Collections.unmodifiableList(NadAnnotationImpl.fromAnnotatedElement(clz));
+
+        List<Field> fields = Arrays.stream(clz.getDeclaredFields())
+                .filter(i -> !Modifier.isStatic(i.getModifiers()))
+                .collect(Collectors.toList());
+        try {
+            fields.forEach(ReflectionUtils::makeAccessible);
+        } catch (Exception ignored) {
+            // An InaccessibleObjectException may be thrown in Java 9+.
+        }
+
+        List<Type> types = new ArrayList<>();
+        constants = Collections.unmodifiableList(Arrays.stream(clz.getEnumConstants())
+                .map(i -> new NadEnumConstantImpl(i, fields, types))
+                .collect(Collectors.toList()));
+        referencedTypes = Collections.unmodifiableList(types);
+    }
+
+    /**
+     * Get the shape of an enum, it is built at the first time.
+     */
+    @NonNull
+    static NadEnumShape of(@NonNull Class<? extends Enum<?>> clz) {
+        return cache.get(clz);
+    }
+
+    @NonNull
+    List<NadAnnotation> getAnnotations() {
+        return annotations;
+    }
+
+    @NonNull
+    List<NadEnumConstant> getConstants() {
+        return constants;
+    }
+
+    /**
+     * The property values of constants which are types.
+     */
+    @NonNull
+    List<Type> getReferencedTypes() {
+        return referencedTypes;
+    }
+}
@@ -0,0 +1,560 @@
+package cn.lalaframework.nad.models;
+
+import cn.lalaframework.nad.interfaces.*;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A dedicated JSON serializer of the Nad model, which writes the known fields of each type directly to a
+ * JsonGenerator, without any bean introspection and without the settings of the host application.
+ * <p>
+ * 1. The definitions are written with the same fields as those written by a default ObjectMapper.
+ * 2. The annotation attributes are written explicitly: a Class is written as its name, an enum as its name,
+ * an array or a collection as an array, and a nested annotation as a NadAnnotation ({ type, attributes }).
+ * 3. The enum constant values and the property values of other types are application values, they are written by
+ * the codec of the generator if it has one (so that they are written as the application writes them),
+ * otherwise an enum is written as its name and any other value as its string.
+ */
+public final class NadJsonWriter {
+    @NonNull
+    private final JsonGenerator generator;
+
+    /**
+     * Whether to write the annotations, otherwise each list of annotations is written as an empty array,
+     * so that the shape of the definitions is kept.
+     */
+    private final boolean annotations;
+
+    private NadJsonWriter(@NonNull JsonGenerator generator, boolean annotations) {
+        this.generator = generator;
+        this.annotations = annotations;
+    }
+
+    /**
+     * Create a writer of a generator.
+     *
+     * @param generator The generator to write to, it is neither flushed nor closed by the writer.
+     */
+    @NonNull
+    public static NadJsonWriter of(@NonNull JsonGenerator generator) {
+        return new NadJsonWriter(generator, true);
+    }
+
+    /**
+     * Create a writer of the same generator, which writes every list of annotations as an empty array.
+     */
+    @NonNull
+    public NadJsonWriter withoutAnnotations() {
+        return new NadJsonWriter(generator, false);
+    }
+
+    /**
+     * Write a NadResult as JSON in parallel. The routes, classes and enums are partitioned into chunks, each chunk is
+     * written into its own buffer by a generator of the factory, and the buffers are written to the output in order
+     * as soon as they are ready. The output is the same as a NadResult written by a generator of the factory.
+     * NOTE: The factory must not have a pretty printer, since the chunks are joined without any whitespace.
+     *
+     * @param result      The result to write.
+     * @param factory     The factory of generators, its codec (if any) writes the application values.
+     * @param out         The output of UTF-8 JSON, it is neither flushed nor closed.
+     * @param executor    The executor of the chunks, or null to use the common ForkJoinPool.
+     *                    NOTE: The tasks of chunks are awaited by current thread, so a bounded executor must not be
+     *                    the one which runs current thread.
+     * @param parallelism How many threads write the chunks, a value less than 2 means writing in current thread.
+     * @return The offsets of the items of each list in the output, keyed by the fields of NadResult
+     * (modules, routes, classes and enums) in the order they are written.
+     */
+    @NonNull
+    public static Map<String, ItemOffsets> writeParallel(@NonNull NadResult result, @NonNull JsonFactory factory,
+                                                         @NonNull OutputStream out, @Nullable Executor executor,
+                                                         int parallelism) throws IOException {
+        Map<String, ItemOffsets> offsets = new LinkedHashMap<>();
+        if (parallelism < 2) {
+            CountingOutputStream counter = new CountingOutputStream(out);
+            try (JsonGenerator generator = factory.createGenerator(counter, JsonEncoding.UTF8)) {
+                // The output is owned by the caller.
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                NadJsonWriter writer = of(generator);
+                generator.writeStartObject();
+                offsets.put("modules", writer.writeList("modules", result.getModules(), NadJsonWriter::writeModule, counter));
+                offsets.put("routes", writer.writeList("routes", result.getRoutes(), NadJsonWriter::writeRoute, counter));
+                offsets.put("classes", writer.writeList("classes", result.getClasses(), NadJsonWriter::writeClass, counter));
+                offsets.put("enums", writer.writeList("enums", result.getEnums(), NadJsonWriter::writeEnum, counter));
+                generator.writeEndObject();
+            }
+            return Collections.unmodifiableMap(offsets);
+        }
+        Executor pool = executor == null ? ForkJoinPool.commonPool() : executor;
+        List<CompletableFuture<Chunk>> modules = submit(factory, pool, result.getModules(), parallelism, NadJsonWriter::writeModule);
+        List<CompletableFuture<Chunk>> routes = submit(factory, pool, result.getRoutes(), parallelism, NadJsonWriter::writeRoute);
+        List<CompletableFuture<Chunk>> classes = submit(factory, pool, result.getClasses(), parallelism, NadJsonWriter::writeClass);
+        List<CompletableFuture<Chunk>> enums = submit(factory, pool, result.getEnums(), parallelism, NadJsonWriter::writeEnum);
+        try {
+            CountingOutputStream counter = new CountingOutputStream(out);
+            writeRaw(counter, "{\"modules\":[");
+            offsets.put("modules", join(counter, modules, result.getModules().size()));
+            writeRaw(counter, "],\"routes\":[");
+            offsets.put("routes", join(counter, routes, result.getRoutes().size()));
+            writeRaw(counter, "],\"classes\":[");
+            offsets.put("classes", join(counter, classes, result.getClasses().size()));
+            writeRaw(counter, "],\"enums\":[");
+            offsets.put("enums", join(counter, enums, result.getEnums().size()));
+            writeRaw(counter, "]}");
+        } finally {
+            // The pool is shared, so the pending chunks of a failed write are cancelled instead of the pool.
+            for (List<CompletableFuture<Chunk>> chunks : Arrays.asList(modules, routes, classes, enums)) {
+                chunks.forEach(i -> i.cancel(false));
+            }
+        }
+        return Collections.unmodifiableMap(offsets);
+    }
+
+    /**
+     * The offsets of the items of a list in the written JSON, so that a slice of the items can be taken from the JSON
+     * without parsing it. The items are separated by commas, so each item but the first one starts after the comma
+     * which follows the end of the previous one.
+     */
+    public static final class ItemOffsets {
+        private final long start;
+
+        @NonNull
+        private final long[] ends;
+
+        ItemOffsets(long start, @NonNull long[] ends) {
+            this.start = start;
+            this.ends = ends;
+        }
+
+        /**
+         * Get the count of items.
+         */
+        public int size() {
+            return ends.length;
+        }
+
+        /**
+         * Get the offset of the first byte of an item, or the offset after the opening bracket if the index is 0.
+         */
+        public long startOf(int index) {
+            return index == 0 ? start : ends[index - 1] + 1;
+        }
+
+        /**
+         * Get the offset after the last byte of an item.
+         */
+        public long endOf(int index) {
+            return ends[index];
+        }
+    }
+
+    /**
+     * An output which counts the written bytes, so that the offset of the generator is known without flushing it.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(@NonNull OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        /**
+         * Get the offset of a generator which writes to this output, including the bytes buffered by it.
+         */
+        long offsetOf(@NonNull JsonGenerator generator) throws IOException {
+            int buffered = generator.getOutputBuffered();
+            if (buffered >= 0) return count + buffered;
+            generator.flush();
+            return count;
+        }
+    }
+
+    /**
+     * Write a field of a list, and record the offsets of its items.
+     */
+    @NonNull
+    private <T> ItemOffsets writeList(@NonNull String field, @NonNull List<T> elements,
+                                      @NonNull ElementWriter<T> elementWriter,
+                                      @NonNull CountingOutputStream counter) throws IOException {
+        generator.writeFieldName(field);
+        generator.writeStartArray();
+        long start = counter.offsetOf(generator);
+        long[] ends = new long[elements.size()];
+        for (int i = 0; i < ends.length; i++) {
+            elementWriter.write(this, elements.get(i));
+            ends[i] = counter.offsetOf(generator);
+        }
+        generator.writeEndArray();
+        return new ItemOffsets(start, ends);
+    }
+
+    @FunctionalInterface
+    private interface ElementWriter<T> {
+        void write(@NonNull NadJsonWriter writer, @NonNull T element) throws IOException;
+    }
+
+    /**
+     * The serialized elements of a chunk, whose ends are the offsets in the data.
+     */
+    private static final class Chunk {
+        @NonNull
+        final byte[] data;
+
+        @NonNull
+        final long[] ends;
+
+        Chunk(@NonNull byte[] data, @NonNull long[] ends) {
+            this.data = data;
+            this.ends = ends;
+        }
+    }
+
+    /**
+     * Partition the elements into chunks, about 4 chunks per thread so that a slow chunk does not hold the others,
+     * and submit a task for each chunk, which writes the elements separated by commas.
+     */
+    @NonNull
+    private static <T> List<CompletableFuture<Chunk>> submit(@NonNull JsonFactory factory, @NonNull Executor pool,
+                                                             @NonNull List<T> elements, int parallelism,
+                                                             @NonNull ElementWriter<T> elementWriter) {
+        int size = elements.size();
+        int chunkSize = Math.max(16, (size + parallelism * 4 - 1) / (parallelism * 4));
+        List<CompletableFuture<Chunk>> res = new ArrayList<>();
+        for (int start = 0; start < size; start += chunkSize) {
+            List<T> chunk = elements.subList(start, Math.min(size, start + chunkSize));
+            res.add(CompletableFuture.supplyAsync(() -> {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+                CountingOutputStream counter = new CountingOutputStream(buffer);
+                long[] ends = new long[chunk.size()];
+                try (JsonGenerator generator = factory.createGenerator(counter, JsonEncoding.UTF8)) {
+                    // The elements are written as root values, which are separated by commas as those of an array.
+                    generator.setRootValueSeparator(new SerializedString(","));
+                    NadJsonWriter writer = of(generator);
+                    for (int i = 0; i < ends.length; i++) {
+                        elementWriter.write(writer, chunk.get(i));
+                        ends[i] = counter.offsetOf(generator);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return new Chunk(buffer.toByteArray(), ends);
+            }, pool));
+        }
+        return res;
+    }
+
+    /**
+     * Write the chunks in order, separated by commas, and record the offsets of their elements.
+     */
+    @NonNull
+    private static ItemOffsets join(@NonNull CountingOutputStream out, @NonNull List<CompletableFuture<Chunk>> chunks,
+                                    int size) throws IOException {
+        long start = out.count;
+        long[] ends = new long[size];
+        int index = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            if (i > 0) out.write(',');
+            Chunk chunk;
+            try {
+                chunk = chunks.get(i).join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw e;
+            }
+            long offset = out.count;
+            for (long end : chunk.ends) ends[index++] = offset + end;
+            out.write(chunk.data);
+        }
+        return new ItemOffsets(start, ends);
+    }
+
+    private static void writeRaw(@NonNull OutputStream out, @NonNull String value) throws IOException {
+        out.write(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write a NadResult, a definition (a module, a route, a class or an enum),
+     * or any other value such as a compact result (see NadCompactResult).
+     */
+    public void write(@Nullable Object value) throws IOException {
+        if (value instanceof NadResult) writeResult((NadResult) value);
+        else if (value instanceof NadRoute) writeRoute((NadRoute) value);
+        else if (value instanceof NadClass) writeClass((NadClass) value);
+        else if (value instanceof NadEnum) writeEnum((NadEnum) value);
+        else if (value instanceof NadModule) writeModule((NadModule) value);
+        else writeValue(value, false);
+    }
+
+    public void writeResult(@NonNull NadResult result) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName("modules");
+        writeModules(result.getModules());
+        generator.writeFieldName("routes");
+        writeRoutes(result.getRoutes());
+        generator.writeFieldName("classes");
+        writeClasses(result.getClasses());
+        generator.writeFieldName("enums");
+        writeEnums(result.getEnums());
+        generator.writeEndObject();
+    }
+
+    public void writeModules(@NonNull List<NadModule> modules) throws IOException {
+        generator.writeStartArray();
+        for (NadModule module : modules) writeModule(module);
+        generator.writeEndArray();
+    }
+
+    public void writeRoutes(@NonNull List<NadRoute> routes) throws IOException {
+        generator.writeStartArray();
+        for (NadRoute route : routes) writeRoute(route);
+        generator.writeEndArray();
+    }
+
+    public void writeClasses(@NonNull List<NadClass> classes) throws IOException {
+        generator.writeStartArray();
+        for (NadClass clz : classes) writeClass(clz);
+        generator.writeEndArray();
+    }
+
+    public void writeEnums(@NonNull List<NadEnum> enums) throws IOException {
+        generator.writeStartArray();
+        for (NadEnum nadEnum : enums) writeEnum(nadEnum);
+        generator.writeEndArray();
+    }
+
+    public void writeModule(@NonNull NadModule module) throws IOException {
+        generator.writeStartObject();
+        writeDefFields(module);
+        generator.writeEndObject();
+    }
+
+    public void writeRoute(@NonNull NadRoute route) throws IOException {
+        generator.writeStartObject();
+        writeMethodFields(route);
+        generator.writeStringField("bean", route.getBean());
+        writeStrings("methods", route.getMethods());
+        writeStrings("patterns", route.getPatterns());
+        generator.writeArrayFieldStart("headers");
+        for (NameValuePair header : route.getHeaders()) {
+            generator.writeStartObject();
+            generator.writeStringField("name", header.getName());
+            generator.writeStringField("value", header.getValue());
+            generator.writeBooleanField("negated", header.isNegated());
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        writeStrings("consumes", route.getConsumes());
+        writeStrings("produces", route.getProduces());
+        writeStrings("customFlags", route.getCustomFlags());
+        generator.writeEndObject();
+    }
+
+    public void writeClass(@NonNull NadClass clz) throws IOException {
+        generator.writeStartObject();
+        writeDefFields(clz);
+        writeStrings("typeParameters", clz.getTypeParameters());
+        generator.writeArrayFieldStart("members");
+        for (NadMember member : clz.getMembers()) writeMember(member);
+        generator.writeEndArray();
+        generator.writeStringField("superclass", clz.getSuperclass());
+        writeStrings("interfaces", clz.getInterfaces());
+        writeStrings("innerClasses", clz.getInnerClasses());
+        generator.writeArrayFieldStart("importantMethods");
+        for (NadMethod method : clz.getImportantMethods()) {
+            generator.writeStartObject();
+            writeMethodFields(method);
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeNumberField("modifiers", clz.getModifiers());
+        generator.writeEndObject();
+    }
+
+    public void writeEnum(@NonNull NadEnum nadEnum) throws IOException {
+        generator.writeStartObject();
+        writeDefFields(nadEnum);
+        generator.writeArrayFieldStart("constants");
+        for (NadEnumConstant constant : nadEnum.getConstants()) {
+            generator.writeStartObject();
+            writeDefFields(constant);
+            generator.writeObjectFieldStart("properties");
+            for (Map.Entry<String, Object> entry : constant.getProperties().entrySet()) {
+                generator.writeFieldName(entry.getKey());
+                writeValue(entry.getValue(), true);
+            }
+            generator.writeEndObject();
+            generator.writeFieldName("value");
+            // The value is an enum, or its plain data if the constant is detached.
+            writeValue(NadDetachedResult.plainValueOf(constant), true);
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    private void writeDefFields(@NonNull NadDef def) throws IOException {
+        generator.writeStringField("name", def.getName());
+        generator.writeFieldName("annotations");
+        writeAnnotations(def.getAnnotations());
+    }
+
+    private void writeMethodFields(@NonNull NadMethod method) throws IOException {
+        writeDefFields(method);
+        writeStrings("typeParameters", method.getTypeParameters());
+        generator.writeStringField("returnType", method.getReturnType());
+        generator.writeArrayFieldStart("parameters");
+        for (NadParameter parameter : method.getParameters()) {
+            generator.writeStartObject();
+            writeDefFields(parameter);
+            generator.writeStringField("type", parameter.getType());
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeNumberField("modifiers", method.getModifiers());
+    }
+
+    private void writeMember(@NonNull NadMember member) throws IOException {
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("annotations");
+        for (List<NadAnnotation> annotations : member.getAnnotations()) writeAnnotations(annotations);
+        generator.writeEndArray();
+        generator.writeStringField("name", member.getName());
+        generator.writeStringField("type", member.getType());
+        generator.writeEndObject();
+    }
+
+    private void writeStrings(@NonNull String field, @NonNull List<String> values) throws IOException {
+        generator.writeArrayFieldStart(field);
+        for (String value : values) generator.writeString(value);
+        generator.writeEndArray();
+    }
+
+    private void writeAnnotations(@Nullable List<NadAnnotation> annotations) throws IOException {
+        if (annotations == null) {
+            generator.writeNull();
+            return;
+        }
+        generator.writeStartArray();
+        if (this.annotations) {
+            for (NadAnnotation annotation : annotations) writeAnnotation(annotation.getType(), annotation.getAttributes());
+        }
+        generator.writeEndArray();
+    }
+
+    private void writeAnnotation(@NonNull String type, @NonNull Map<String, Object> attributes) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", type);
+        generator.writeObjectFieldStart("attributes");
+        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+            generator.writeFieldName(entry.getKey());
+            writeValue(entry.getValue(), false);
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    /**
+     * Write an enum constant value, or a property value of an unknown type.
+     */
+    private void writeApplicationValue(@NonNull Object value) throws IOException {
+        if (generator.getCodec() != null) generator.writeObject(value);
+        else if (value instanceof Enum) generator.writeString(((Enum<?>) value).name());
+        else generator.writeString(value.toString());
+    }
+
+    /**
+     * Write a plain value, such as an annotation attribute.
+     *
+     * @param isApplicationValue Whether a value of an unknown type is an application value,
+     *                           otherwise it is written as its string.
+     */
+    private void writeValue(@Nullable Object value, boolean isApplicationValue) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            generator.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Double) {
+            generator.writeNumber((Double) value);
+        } else if (value instanceof Float) {
+            generator.writeNumber((Float) value);
+        } else if (value instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) value);
+        } else if (value instanceof BigInteger) {
+            generator.writeNumber((BigInteger) value);
+        } else if (value instanceof Character) {
+            generator.writeString(value.toString());
+        } else if (value instanceof Class) {
+            generator.writeString(((Class<?>) value).getName());
+        } else if (value instanceof Annotation) {
+            Annotation annotation = (Annotation) value;
+            writeAnnotation(annotation.annotationType().getTypeName(), AnnotationUtils.getAnnotationAttributes(annotation));
+        } else if (value.getClass().isArray()) {
+            generator.writeStartArray();
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) writeValue(Array.get(value, i), isApplicationValue);
+            generator.writeEndArray();
+        } else if (value instanceof Collection) {
+            generator.writeStartArray();
+            for (Object item : (Collection<?>) value) writeValue(item, isApplicationValue);
+            generator.writeEndArray();
+        } else if (value instanceof Map) {
+            generator.writeStartObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                generator.writeFieldName(String.valueOf(entry.getKey()));
+                writeValue(entry.getValue(), isApplicationValue);
+            }
+            generator.writeEndObject();
+        } else if (isApplicationValue) {
+            writeApplicationValue(value);
+        } else if (value instanceof Enum) {
+            generator.writeString(((Enum<?>) value).name());
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+}
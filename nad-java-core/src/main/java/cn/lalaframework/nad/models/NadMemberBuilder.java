@@ -8,7 +8,9 @@ import org.springframework.lang.Nullable;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -34,6 +36,41 @@ public class NadMemberBuilder {
      */
     @NonNull
     public static List<NadMember> buildMemberList(@NonNull Class<?> clz) {
+        List<Type> referencedTypes = new ArrayList<>();
+        List<NadMember> members = buildMemberList(clz, referencedTypes);
+        referencedTypes.forEach(NadContext::collectType);
+        return members;
+    }
+
+    /**
+     * The order of declared methods, a bridge method is followed by the method it bridges to.
+     */
+    private static final Comparator<Method> METHOD_ORDER = Comparator.comparing(Method::getName)
+            .thenComparing(Method::isBridge, Comparator.reverseOrder())
+            .thenComparing(m -> Arrays.stream(m.getParameterTypes()).map(Class::getTypeName).collect(Collectors.joining(",")))
+            .thenComparing(m -> m.getReturnType().getTypeName());
+
+    /**
+     * Get the declared methods of a class in a stable order.
+     * NOTE: The order of Class.getDeclaredMethods is unspecified, it may be different between JVMs (even two runs
+     * of the same application), so the defs would not be the same if they depend on it.
+     * Since the later one of two accessors with the same name wins, a bridge method never hides its target.
+     */
+    @NonNull
+    static List<Method> getDeclaredMethods(@NonNull Class<?> clz) {
+        Method[] methods = clz.getDeclaredMethods();
+        Arrays.sort(methods, METHOD_ORDER);
+        return Arrays.asList(methods);
+    }
+
+    /**
+     * Scan the declared fields and methods of specified class, build a NadMember list without collecting anything.
+     *
+     * @param clz             A standard java class.
+     * @param referencedTypes The member types are added to this list, the caller is responsible to collect them.
+     */
+    @NonNull
+    static List<NadMember> buildMemberList(@NonNull Class<?> clz, @NonNull List<Type> referencedTypes) {
         // Use a TreeMap to keep the order of the items.
         NadMemberMap result = new NadMemberMap();
 
@@ -41,11 +78,15 @@ public class NadMemberBuilder {
         // IMPORTANT: Methods must be collected first before fields.
         // Because taking out the field alone we cannot know whether it is accessible or not.
         // We have to determine the accessibility of a field based on the corresponding accessor methods.
-        Arrays.stream(clz.getDeclaredMethods()).forEach(result::addMethod);
+        getDeclaredMethods(clz).forEach(result::addMethod);
         Arrays.stream(clz.getDeclaredFields()).forEach(result::addField);
 
         // Build all NadMember classes into a list.
-        return result.values().stream().map(NadMemberBuilder::build).collect(Collectors.toList());
+        return result.values().stream().map(builder -> {
+            Type javaType = builder.getJavaType();
+            if (javaType != null) referencedTypes.add(javaType);
+            return builder.build();
+        }).collect(Collectors.toList());
     }
 
     /**
@@ -63,25 +104,32 @@ public class NadMemberBuilder {
     }
 
     /**
-     * Calculates the member type from field and accessor methods.
+     * Find the member type from field and accessor methods.
      *
-     * @return A typeName string, that has collected by NadContext.
+     * @return A java type, or null if it is unknown.
      */
-    @NonNull
-    private String buildType() {
-        Type javaType = null;
+    @Nullable
+    private Type getJavaType() {
         if (getter != null) {
-            javaType = getter.getGenericReturnType();
+            return getter.getGenericReturnType();
         } else if (field != null) {
-            javaType = field.getGenericType();
+            return field.getGenericType();
         } else if (setter != null) {
-            javaType = Arrays.stream(setter.getGenericParameterTypes()).findFirst().orElse(null);
+            return Arrays.stream(setter.getGenericParameterTypes()).findFirst().orElse(null);
         }
-        if (javaType != null) {
-            NadContext.collectType(javaType);
-            return javaType.getTypeName();
-        }
-        return "unknown";
+        return null;
+    }
+
+    /**
+     * Calculates the member type from field and accessor methods.
+     * NOTE: The type is not collected here, see buildMemberList.
+     *
+     * @return A typeName string.
+     */
+    @NonNull
+    private String buildType() {
+        Type javaType = getJavaType();
+        return javaType != null ? NadPools.typeNames.intern(javaType.getTypeName()) : "unknown";
     }
 
     /**
@@ -113,9 +161,11 @@ public class NadMemberBuilder {
 
     /**
      * Build a real NadMember object from the parameters of this builder.
+     * NOTE: The member is interned, so the same member of several classes (such as `id: java.lang.Long`)
+     * is stored only once.
      */
     @NonNull
     private NadMember build() {
-        return new NadMemberImpl(name, buildType(), buildAnnotations());
+        return NadPools.members.intern(new NadMemberImpl(name, buildType(), buildAnnotations()));
     }
 }
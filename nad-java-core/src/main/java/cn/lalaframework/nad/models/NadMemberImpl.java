@@ -5,6 +5,7 @@ import cn.lalaframework.nad.interfaces.NadMember;
 import org.springframework.lang.NonNull;
 
 import java.util.List;
+import java.util.Objects;
 
 public class NadMemberImpl implements NadMember {
     @NonNull
@@ -13,11 +14,13 @@ public class NadMemberImpl implements NadMember {
     private final String type;
     @NonNull
     private final List<List<NadAnnotation>> annotations;
+    private final int hash;
 
     public NadMemberImpl(@NonNull String name, @NonNull String type, @NonNull List<List<NadAnnotation>> annotations) {
         this.name = name;
         this.type = type;
         this.annotations = annotations;
+        hash = Objects.hash(name, type, annotations);
     }
 
     @Override
@@ -37,4 +40,18 @@ public class NadMemberImpl implements NadMember {
     public String getType() {
         return type;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        NadMemberImpl that = (NadMemberImpl) o;
+        return hash == that.hash && name.equals(that.name) && type.equals(that.type)
+                && annotations.equals(that.annotations);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
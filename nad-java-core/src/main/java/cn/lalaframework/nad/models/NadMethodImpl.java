@@ -24,7 +24,8 @@ public class NadMethodImpl extends NadDefImpl implements NadMethod {
 
     public NadMethodImpl(@NonNull Method method) {
         super(method.getName(), NadAnnotationImpl.fromAnnotatedElement(method));
-        parameters = Arrays.stream(method.getParameters()).map(NadParameterImpl::new).collect(Collectors.toList());
+        parameters = Arrays.stream(method.getParameters()).map(NadParameterImpl::new).map(NadPools.parameters::intern)
+                .collect(Collectors.toList());
         typeParameters = buildTypeParameters(method);
         returnType = NadContext.cc(method.getGenericReturnType());
         modifiers = method.getModifiers();
@@ -32,7 +33,8 @@ public class NadMethodImpl extends NadDefImpl implements NadMethod {
 
     public NadMethodImpl(@NonNull HandlerMethod h) {
         super(h.getMethod().getName(), NadAnnotationImpl.fromAnnotatedElement(h.getMethod()));
-        parameters = Arrays.stream(h.getMethodParameters()).map(NadParameterImpl::new).collect(Collectors.toList());
+        parameters = Arrays.stream(h.getMethodParameters()).map(NadParameterImpl::new).map(NadPools.parameters::intern)
+                .collect(Collectors.toList());
         typeParameters = buildTypeParameters(h.getMethod());
         returnType = NadContext.cc(h.getMethod().getGenericReturnType());
         modifiers = h.getMethod().getModifiers();
@@ -5,39 +5,40 @@ import org.springframework.core.DefaultParameterNameDiscoverer;
 import org.springframework.core.MethodParameter;
 import org.springframework.core.ParameterNameDiscoverer;
 import org.springframework.lang.NonNull;
-import org.springframework.lang.Nullable;
 
 import java.lang.reflect.Parameter;
 import java.lang.reflect.Type;
+import java.util.Objects;
 import java.util.Optional;
 
 public class NadParameterImpl extends NadDefImpl implements NadParameter {
-    @Nullable
-    private static ParameterNameDiscoverer parameterNameDiscoverer;
+    /**
+     * The DefaultParameterNameDiscoverer is a stateless class, so it can be shared by all threads.
+     */
+    @NonNull
+    private static final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
     @NonNull
     private final String type;
+    private final int hash;
 
     public NadParameterImpl(@NonNull MethodParameter p) {
         super(initAndGetName(p), NadAnnotationImpl.fromArray(p.getParameterAnnotations()));
         Type parameterType = p.getGenericParameterType();
         NadContext.collectType(parameterType);
-        type = parameterType.getTypeName();
+        type = NadPools.typeNames.intern(parameterType.getTypeName());
+        hash = Objects.hash(getName(), type, getAnnotations());
     }
 
     public NadParameterImpl(@NonNull Parameter p) {
         super(p.getName(), NadAnnotationImpl.fromArray(p.getAnnotations()));
         Type pType = p.getParameterizedType();
         NadContext.collectType(pType);
-        type = pType.getTypeName();
+        type = NadPools.typeNames.intern(pType.getTypeName());
+        hash = Objects.hash(getName(), type, getAnnotations());
     }
 
     @NonNull
     private static String initAndGetName(MethodParameter p) {
-        // Security for threads is not necessary here.
-        // Because a NadCore always runs in a single thread.
-        // Besides, the DefaultParameterNameDiscoverer is a stateless class,
-        // so even repeated creation is not a big deal.
-        if (parameterNameDiscoverer == null) parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
         p.initParameterNameDiscovery(parameterNameDiscoverer);
         return Optional.ofNullable(p.getParameterName()).orElse("");
     }
@@ -47,4 +48,17 @@ public class NadParameterImpl extends NadDefImpl implements NadParameter {
     public String getType() {
         return type;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        NadParameterImpl that = (NadParameterImpl) o;
+        return hash == that.hash && getName().equals(that.getName()) && type.equals(that.type) && getAnnotations().equals(that.getAnnotations());
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
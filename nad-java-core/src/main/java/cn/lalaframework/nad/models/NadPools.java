@@ -0,0 +1,34 @@
+package cn.lalaframework.nad.models;
+
+import cn.lalaframework.nad.interfaces.NadAnnotation;
+import cn.lalaframework.nad.interfaces.NadMember;
+import cn.lalaframework.nad.interfaces.NadParameter;
+import cn.lalaframework.nad.utils.Interner;
+import org.springframework.lang.NonNull;
+
+import java.util.List;
+
+/**
+ * The pools of the small values which are repeated all over the defs, such as `@RequestParam(required=false)`
+ * or a member `id: java.lang.Long`, each distinct value is stored only once.
+ */
+final class NadPools {
+    @NonNull
+    static final Interner<String> typeNames = new Interner<>();
+
+    @NonNull
+    static final Interner<NadAnnotation> annotations = new Interner<>();
+
+    @NonNull
+    static final Interner<List<NadAnnotation>> annotationLists = new Interner<>();
+
+    @NonNull
+    static final Interner<NadMember> members = new Interner<>();
+
+    @NonNull
+    static final Interner<NadParameter> parameters = new Interner<>();
+
+    private NadPools() {
+        throw new IllegalStateException("Utility class");
+    }
+}
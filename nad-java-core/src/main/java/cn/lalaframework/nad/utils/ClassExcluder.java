@@ -1,13 +1,34 @@
 package cn.lalaframework.nad.utils;
 
 import org.springframework.aop.ClassFilter;
+import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class ClassExcluder implements ClassFilter {
+    /**
+     * Rules for the JDK and common frameworks, whose classes are never a part of the application defs.
+     */
+    public static final List<String> DEFAULT_RULES = Collections.unmodifiableList(Arrays.asList(
+            "java.*",
+            "javax.*",
+            "jakarta.*",
+            "org.springframework.*",
+            "com.alibaba.fastjson.*",
+            "com.fasterxml.jackson.*"
+    ));
+
     private final PatternTree root;
 
+    /**
+     * The compiled rules and the decisions made by them, it is dropped when a rule is added.
+     */
+    @Nullable
+    private volatile Decisions decisions;
+
     public ClassExcluder() {
         root = new PatternTree();
     }
@@ -21,13 +42,47 @@ public class ClassExcluder implements ClassFilter {
      * @param rule Either a full-qualified type name, such as `java.util.List`,
      *             or a pattern ending in "*",such as `java.lang.*`.
      */
-    public void addRule(String rule) {
+    public synchronized void addRule(String rule) {
         root.add(rule);
+        decisions = null;
     }
 
     @Override
     public boolean matches(@Nullable Class<?> clz) {
         if (clz == null) return false;
-        return root.match(clz.getTypeName());
+        return getDecisions().get(clz);
+    }
+
+    @NonNull
+    private Decisions getDecisions() {
+        Decisions res = decisions;
+        if (res == null) {
+            synchronized (this) {
+                res = decisions;
+                if (res == null) {
+                    res = new Decisions(root.compile());
+                    decisions = res;
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * A per-class decision cache, each class is matched by the compiled rules only once.
+     * NOTE: A ClassValue does not prevent the classes from being unloaded.
+     */
+    private static class Decisions extends ClassValue<Boolean> {
+        @NonNull
+        private final PatternMatcher matcher;
+
+        private Decisions(@NonNull PatternMatcher matcher) {
+            this.matcher = matcher;
+        }
+
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return matcher.match(type.getTypeName());
+        }
     }
 }
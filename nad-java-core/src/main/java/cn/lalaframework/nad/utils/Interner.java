@@ -0,0 +1,50 @@
+package cn.lalaframework.nad.utils;
+
+import org.springframework.lang.NonNull;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A pool of canonical instances, an equal value is replaced by the instance in the pool (hash consing),
+ * so that the duplicated values can be garbage collected.
+ * NOTE: The instances are weakly referenced, so a value which is not used anymore (for example, the defs of
+ * an unloaded ClassLoader) is removed from the pool.
+ *
+ * @param <T> The type of values, which must be immutable and have value-based equals and hashCode.
+ */
+public final class Interner<T> {
+    /**
+     * The pool is split into several stripes, so that the threads of a parallel collection rarely wait for each other.
+     */
+    private static final int STRIPES = 16;
+
+    @NonNull
+    private final Map<T, WeakReference<T>>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    public Interner() {
+        stripes = new Map[STRIPES];
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new WeakHashMap<>();
+    }
+
+    /**
+     * Get the canonical instance of a value.
+     *
+     * @param value A value.
+     * @return The instance in the pool which equals the value, or the value itself if it is added to the pool.
+     */
+    @NonNull
+    public T intern(@NonNull T value) {
+        int hash = value.hashCode();
+        Map<T, WeakReference<T>> stripe = stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+        synchronized (stripe) {
+            WeakReference<T> ref = stripe.get(value);
+            T res = ref != null ? ref.get() : null;
+            if (res != null) return res;
+            stripe.put(value, new WeakReference<>(value));
+            return value;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package cn.lalaframework.nad.utils;
+
+import org.springframework.lang.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable automaton compiled from a PatternTree, it matches a string without recursion, boxing or allocation.
+ * The nodes are numbered in breadth-first order, the root is 0.
+ * The edges of all nodes are stored in flat arrays, the edges of each node are sorted by their chars.
+ * NOTE: A dense (node x char) table is not used, because a large number of full-qualified rules would make it huge.
+ */
+class PatternMatcher {
+    /**
+     * The edges of node i are in the range [firstEdges[i], firstEdges[i + 1]).
+     */
+    @NonNull
+    private final int[] firstEdges;
+
+    @NonNull
+    private final char[] labels;
+
+    @NonNull
+    private final int[] targets;
+
+    @NonNull
+    private final boolean[] wildcards;
+
+    PatternMatcher(@NonNull PatternTree root) {
+        List<PatternTree> nodes = new ArrayList<>();
+        nodes.add(root);
+        int edgeCount = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            Map<Character, PatternTree> children = nodes.get(i).getChildren();
+            if (children == null) continue;
+            nodes.addAll(children.values());
+            edgeCount += children.size();
+        }
+
+        firstEdges = new int[nodes.size() + 1];
+        labels = new char[edgeCount];
+        targets = new int[edgeCount];
+        wildcards = new boolean[nodes.size()];
+
+        // The children are numbered in the same order as they were added to the node list above.
+        int edge = 0;
+        int next = 1;
+        for (int i = 0; i < nodes.size(); i++) {
+            PatternTree node = nodes.get(i);
+            firstEdges[i] = edge;
+            wildcards[i] = node.isWildcard();
+            Map<Character, PatternTree> children = node.getChildren();
+            if (children == null) continue;
+            // The children are stored in a TreeMap, so the labels are sorted.
+            for (Character ch : children.keySet()) {
+                labels[edge] = ch;
+                targets[edge] = next++;
+                edge++;
+            }
+        }
+        firstEdges[nodes.size()] = edge;
+    }
+
+    /**
+     * Find the target node of an edge, or -1 if there is no such edge.
+     */
+    private int next(int node, char ch) {
+        int low = firstEdges[node];
+        int high = firstEdges[node + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char label = labels[mid];
+            if (label < ch) low = mid + 1;
+            else if (label > ch) high = mid - 1;
+            else return targets[mid];
+        }
+        return -1;
+    }
+
+    /**
+     * It is the same as PatternTree.match, but runs in a loop.
+     */
+    boolean match(@NonNull String path) {
+        int node = 0;
+        for (int offset = 0; offset < path.length(); offset++) {
+            if (wildcards[node]) return true;
+            node = next(node, path.charAt(offset));
+            if (node < 0) return false;
+        }
+        return true;
+    }
+}
@@ -43,6 +43,23 @@ class PatternTree {
         add(path, 0);
     }
 
+    protected boolean isWildcard() {
+        return isWildcard;
+    }
+
+    @Nullable
+    protected Map<Character, PatternTree> getChildren() {
+        return children;
+    }
+
+    /**
+     * Compile current patterns into an immutable matcher, later changes of this tree will not affect it.
+     */
+    @NonNull
+    protected PatternMatcher compile() {
+        return new PatternMatcher(this);
+    }
+
     protected boolean match(@NonNull String path) {
         return match(path, 0);
     }
@@ -1,10 +1,19 @@
 package cn.lalaframework.nad;
 
+import cn.lalaframework.nad.controllers.dto.User;
 import cn.lalaframework.nad.exceptions.NadContextRecursionException;
 import cn.lalaframework.nad.exceptions.NoNadContextException;
+import cn.lalaframework.nad.interfaces.NadClass;
+import cn.lalaframework.nad.interfaces.NadResult;
 import cn.lalaframework.nad.models.NadContext;
 import org.junit.jupiter.api.Test;
 
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class NadContextTest {
@@ -48,4 +57,42 @@ class NadContextTest {
         outOfContext();
     }
 
-}
\ No newline at end of file
+    @Test
+    void deepType() throws InterruptedException {
+        // List<List<List<...<User>...>>> with 100000 levels.
+        Type type = User.class;
+        for (int i = 0; i < 100000; i++) {
+            Type arg = type;
+            type = new ParameterizedType() {
+                public Type[] getActualTypeArguments() {
+                    return new Type[]{arg};
+                }
+
+                public Type getRawType() {
+                    return List.class;
+                }
+
+                public Type getOwnerType() {
+                    return null;
+                }
+            };
+        }
+        Type deep = type;
+
+        // The walk must not depend on the call stack, even on a thread with a small stack.
+        AtomicReference<Object> res = new AtomicReference<>();
+        Thread thread = new Thread(null, () -> {
+            try {
+                res.set(NadContext.run(() -> NadContext.cc(deep) != null ? NadContext.dump() : null, null));
+            } catch (Throwable e) {
+                res.set(e);
+            }
+        }, "small-stack", 256 * 1024);
+        thread.start();
+        thread.join();
+
+        assertTrue(res.get() instanceof NadResult, () -> String.valueOf(res.get()));
+        List<String> names = ((NadResult) res.get()).getClasses().stream().map(NadClass::getName).collect(Collectors.toList());
+        assertTrue(names.contains(User.class.getTypeName()));
+    }
+}
@@ -0,0 +1,16 @@
+package cn.lalaframework.nad.controllers;
+
+import cn.lalaframework.nad.controllers.dto.Order;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Collections;
+import java.util.List;
+
+@RestController
+public class OrderController {
+    @GetMapping("/orders")
+    public List<Order> getOrders() {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,33 @@
+package cn.lalaframework.nad.controllers.dto;
+
+import java.util.List;
+
+public class Order {
+    private Long id;
+    private User buyer;
+    private List<OrderItem> items;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public User getBuyer() {
+        return buyer;
+    }
+
+    public void setBuyer(User buyer) {
+        this.buyer = buyer;
+    }
+
+    public List<OrderItem> getItems() {
+        return items;
+    }
+
+    public void setItems(List<OrderItem> items) {
+        this.items = items;
+    }
+}
@@ -0,0 +1,22 @@
+package cn.lalaframework.nad.controllers.dto;
+
+public class OrderItem {
+    private String name;
+    private Integer count;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Integer getCount() {
+        return count;
+    }
+
+    public void setCount(Integer count) {
+        this.count = count;
+    }
+}
@@ -12,8 +12,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import java.io.Serializable;
 import java.util.List;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest(classes = TestApplication.class)
 class ClassesTest {
@@ -28,7 +27,10 @@ class ClassesTest {
     }
 
     private NadClass getNadClass() {
-        NadResult res = core.create();
+        return getNadClass(core.create());
+    }
+
+    private static NadClass getNadClass(NadResult res) {
         return res.getClasses().stream()
                 .filter(i -> User.class.getTypeName().equals(i.getName()))
                 .findAny().orElse(null);
@@ -59,4 +61,14 @@ class ClassesTest {
                 .findAny().orElse(null);
         assertNotNull(iface);
     }
-}
\ No newline at end of file
+
+    @Test
+    void cached() {
+        // The reflective shape of a class is shared by all contexts.
+        NadClass c1 = getNadClass(core.create(null));
+        NadClass c2 = getNadClass(core.create(null));
+        assertNotSame(c1, c2);
+        assertSame(c1.getMembers(), c2.getMembers());
+        assertSame(c1.getAnnotations(), c2.getAnnotations());
+    }
+}
@@ -0,0 +1,67 @@
+package cn.lalaframework.nad.core;
+
+import cn.lalaframework.nad.TestApplication;
+import cn.lalaframework.nad.interfaces.NadClass;
+import cn.lalaframework.nad.interfaces.NadMember;
+import cn.lalaframework.nad.interfaces.NadResult;
+import cn.lalaframework.nad.interfaces.NadRoute;
+import cn.lalaframework.nad.models.NadCompactResult;
+import cn.lalaframework.nad.utils.ClassExcluder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = TestApplication.class)
+class CompactTest {
+    @Autowired
+    private Core core;
+
+    @Test
+    void encode() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        NadResult result = core.create(new ClassExcluder(ClassExcluder.DEFAULT_RULES));
+        String json = mapper.writeValueAsString(NadCompactResult.encode(result));
+        // The fixtures are small, a real application with more repeated type names is compressed much more.
+        assertTrue(json.length() * 3 < mapper.writeValueAsString(result).length() * 2);
+        assertFalse(json.contains("\"typeParameters\":[]"));
+        assertFalse(json.contains("\"modifiers\":0"));
+        assertFalse(json.contains("null,null,null"));
+
+        JsonNode root = mapper.readTree(json);
+        assertEquals(NadCompactResult.FORMAT, root.get("format").asText());
+        JsonNode strings = root.get("strings");
+        // Each string is stored only once.
+        assertEquals(strings.size(), mapper.convertValue(strings, Set.class).size());
+
+        List<NadClass> classes = result.getClasses();
+        assertEquals(classes.size(), root.get("classes").size());
+        for (int i = 0; i < classes.size(); i++) {
+            NadClass clz = classes.get(i);
+            JsonNode node = root.get("classes").get(i);
+            assertEquals(clz.getName(), strings.get(node.get("name").asInt()).asText());
+            List<NadMember> members = clz.getMembers();
+            for (int j = 0; j < members.size(); j++) {
+                JsonNode member = node.get("members").get(j);
+                assertEquals(members.get(j).getName(), member.get(0).asText());
+                assertEquals(members.get(j).getType(), strings.get(member.get(1).asInt()).asText());
+            }
+        }
+
+        List<NadRoute> routes = result.getRoutes();
+        for (int i = 0; i < routes.size(); i++) {
+            NadRoute route = routes.get(i);
+            JsonNode node = root.get("routes").get(i);
+            assertEquals(route.getBean(), strings.get(node.get("bean").asInt()).asText());
+            assertEquals(route.getReturnType(), strings.get(node.get("returnType").asInt()).asText());
+            assertEquals(route.getPatterns().get(0), node.get("patterns").get(0).asText());
+            assertEquals(route.getParameters().size(), node.has("parameters") ? node.get("parameters").size() : 0);
+        }
+    }
+}
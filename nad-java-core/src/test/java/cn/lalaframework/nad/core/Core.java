@@ -2,6 +2,7 @@ package cn.lalaframework.nad.core;
 
 import cn.lalaframework.nad.interfaces.NadResult;
 import cn.lalaframework.nad.models.NadContext;
+import cn.lalaframework.nad.models.NadDependencyGraph;
 import org.springframework.aop.ClassFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.lang.NonNull;
@@ -28,9 +29,20 @@ class Core {
     }
 
     protected NadResult create(ClassFilter filter) {
+        return create(filter, 1);
+    }
+
+    protected NadDependencyGraph createGraph(ClassFilter filter, int parallelism) {
+        return NadContext.run(() -> {
+            NadContext.collectSpringWeb(rhMapping);
+            return new NadDependencyGraph(NadContext.dump(), NadContext.dumpDependencies());
+        }, filter, m -> true, parallelism);
+    }
+
+    protected NadResult create(ClassFilter filter, int parallelism) {
         return NadContext.run(() -> {
             NadContext.collectSpringWeb(rhMapping);
             return NadContext.dump();
-        }, filter, m -> true);
+        }, filter, m -> true, parallelism);
     }
 }
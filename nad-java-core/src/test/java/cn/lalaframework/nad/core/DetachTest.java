@@ -0,0 +1,144 @@
+package cn.lalaframework.nad.core;
+
+import cn.lalaframework.nad.TestApplication;
+import cn.lalaframework.nad.interfaces.*;
+import cn.lalaframework.nad.models.NadContext;
+import cn.lalaframework.nad.models.NadDetachedResult;
+import cn.lalaframework.nad.models.NadJsonWriter;
+import cn.lalaframework.nad.utils.ClassExcluder;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = TestApplication.class)
+class DetachTest {
+    @Autowired
+    private RequestMappingHandlerMapping rhMapping;
+
+    private NadResult collect() {
+        return NadContext.run(() -> {
+            NadContext.collectSpringWeb(rhMapping);
+            return NadContext.dump();
+        }, new ClassExcluder(ClassExcluder.DEFAULT_RULES), null, 1);
+    }
+
+    private static JsonNode write(ObjectMapper mapper, NadResult result) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            NadJsonWriter.of(generator).write(result);
+        }
+        return mapper.readTree(out.toString());
+    }
+
+    /**
+     * Assert that a value is plain data, which references no class of the application.
+     */
+    private static void assertPlain(Object value) {
+        if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean) return;
+        if (value instanceof List) {
+            ((List<?>) value).forEach(DetachTest::assertPlain);
+        } else if (value instanceof Map) {
+            ((Map<?, ?>) value).values().forEach(DetachTest::assertPlain);
+        } else {
+            fail("Not plain data: " + value.getClass().getTypeName());
+        }
+    }
+
+    private static List<NadAnnotation> allAnnotations(NadResult result) {
+        List<NadAnnotation> res = new ArrayList<>();
+        result.getModules().forEach(i -> res.addAll(i.getAnnotations()));
+        for (NadRoute route : result.getRoutes()) {
+            res.addAll(route.getAnnotations());
+            route.getParameters().forEach(i -> res.addAll(i.getAnnotations()));
+        }
+        for (NadClass clz : result.getClasses()) {
+            res.addAll(clz.getAnnotations());
+            for (NadMember member : clz.getMembers()) {
+                member.getAnnotations().forEach(i -> {
+                    if (i != null) res.addAll(i);
+                });
+            }
+        }
+        for (NadEnum nadEnum : result.getEnums()) {
+            res.addAll(nadEnum.getAnnotations());
+            nadEnum.getConstants().forEach(i -> res.addAll(i.getAnnotations()));
+        }
+        return res;
+    }
+
+    @Test
+    void sameAsLive() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        NadResult live = collect();
+        NadResult detached = NadDetachedResult.detach(live, value -> mapper.convertValue(value, Object.class));
+        // The detached result is written exactly as the live one, by either the dedicated writer or an ObjectMapper.
+        assertEquals(write(mapper, live), write(mapper, detached));
+        assertEquals(mapper.valueToTree(live), mapper.valueToTree(detached));
+        assertSame(detached, NadDetachedResult.detach(detached, null));
+
+        List<NadAnnotation> annotations = allAnnotations(detached);
+        assertFalse(annotations.isEmpty());
+        annotations.forEach(i -> assertPlain(i.getAttributes()));
+        assertFalse(detached.getEnums().isEmpty());
+        for (NadEnum nadEnum : detached.getEnums()) {
+            for (NadEnumConstant constant : nadEnum.getConstants()) {
+                assertPlain(NadDetachedResult.plainValueOf(constant));
+                assertPlain(constant.getProperties());
+            }
+        }
+        // The enum itself is still available while its class is loaded.
+        NadEnumConstant liveConstant = live.getEnums().get(0).getConstants().get(0);
+        assertSame(liveConstant.getValue(), detached.getEnums().get(0).getConstants().get(0).getValue());
+        assertSame(liveConstant.getValue(), NadDetachedResult.plainValueOf(liveConstant));
+        assertThrows(UnsupportedOperationException.class, () -> detached.getRoutes().remove(0));
+        assertThrows(UnsupportedOperationException.class, () -> annotations.get(0).getAttributes().clear());
+    }
+
+    @Test
+    void withoutAnnotations() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        NadResult live = collect();
+        NadResult detached = NadDetachedResult.detach(live, value -> mapper.convertValue(value, Object.class));
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            NadJsonWriter.of(generator).withoutAnnotations().write(live);
+        }
+        JsonNode expected = mapper.readTree(out.toString());
+        // The annotations are omitted by any serializer, and a detached result is stripped as a live one.
+        for (NadResult result : new NadResult[]{live, detached}) {
+            NadResult bare = NadDetachedResult.detach(result, value -> mapper.convertValue(value, Object.class), false);
+            assertTrue(allAnnotations(bare).isEmpty());
+            assertEquals(expected, write(mapper, bare));
+            assertEquals(expected, mapper.valueToTree(bare));
+        }
+    }
+
+    @Test
+    void withoutMapper() throws IOException {
+        NadResult live = collect();
+        NadResult detached = NadDetachedResult.detach(live, null);
+        // The enum values are written as their names without a codec.
+        ObjectMapper mapper = new ObjectMapper();
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            // Without a codec, the live enum values are written as their names too.
+            generator.setCodec(null);
+            NadJsonWriter.of(generator).write(live);
+        }
+        assertEquals(mapper.readTree(out.toString()), write(mapper, detached));
+        NadEnumConstant constant = detached.getEnums().get(0).getConstants().get(0);
+        assertEquals(constant.getName(), NadDetachedResult.plainValueOf(constant));
+    }
+}
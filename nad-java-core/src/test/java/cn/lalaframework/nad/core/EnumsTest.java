@@ -11,20 +11,22 @@ import org.springframework.boot.test.context.SpringBootTest;
 
 import java.util.List;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest(classes = TestApplication.class)
 class EnumsTest {
     @Autowired
     private Core core;
 
-    @Test
-    void getEnums() {
-        NadResult res = core.create();
-        NadEnum ne = res.getEnums().stream()
+    private static NadEnum getRole(NadResult res) {
+        return res.getEnums().stream()
                 .filter(i -> i.getName().endsWith(Role.class.getTypeName()))
                 .findAny().orElse(null);
+    }
+
+    @Test
+    void getEnums() {
+        NadEnum ne = getRole(core.create());
         assertNotNull(ne);
         List<NadEnumConstant> constants = ne.getConstants();
         assertEquals(2, constants.size());
@@ -43,4 +45,13 @@ class EnumsTest {
         assertEquals(Role.DEV.getCode(), c1.getProperties().get("code"));
         assertNotNull(c1.getAnnotations());
     }
-}
\ No newline at end of file
+
+    @Test
+    void cached() {
+        // The constants of an enum are shared by all contexts.
+        NadEnum e1 = getRole(core.create(null));
+        NadEnum e2 = getRole(core.create(null));
+        assertNotSame(e1, e2);
+        assertSame(e1.getConstants(), e2.getConstants());
+    }
+}
@@ -12,9 +12,10 @@ import org.springframework.boot.test.context.SpringBootTest;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import static org.junit.jupiter.api.Assertions.assertNotNull;
-import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest(classes = TestApplication.class)
 class FilterTest {
@@ -72,4 +73,16 @@ class FilterTest {
         assertNull(role);
         assertNull(user);
     }
-}
\ No newline at end of file
+
+    @Test
+    void matchedOnce() {
+        // A type which has been walked is skipped at once, so the excluder sees each DTO only once per context.
+        Map<Class<?>, Integer> counts = new ConcurrentHashMap<>();
+        core.create(clz -> {
+            counts.merge(clz, 1, Integer::sum);
+            return false;
+        });
+        assertEquals(1, counts.get(User.class));
+        assertEquals(1, counts.get(Role.class));
+    }
+}
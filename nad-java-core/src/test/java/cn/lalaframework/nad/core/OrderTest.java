@@ -0,0 +1,84 @@
+package cn.lalaframework.nad.core;
+
+import cn.lalaframework.nad.TestApplication;
+import cn.lalaframework.nad.interfaces.NadDef;
+import cn.lalaframework.nad.interfaces.NadResult;
+import cn.lalaframework.nad.interfaces.NadRoute;
+import cn.lalaframework.nad.models.NadContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.lang.NonNull;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = TestApplication.class)
+class OrderTest {
+    @Autowired
+    private Core core;
+
+    private static List<String> names(List<? extends NadDef> defs) {
+        return defs.stream().map(NadDef::getName).collect(Collectors.toList());
+    }
+
+    private static void assertSorted(NadResult res) {
+        // The routes must be in the same order as a TreeSet ordered by the sort key.
+        TreeSet<NadRoute> routes = new TreeSet<>(Comparator.comparing(NadRoute::getSortKey));
+        routes.addAll(res.getRoutes());
+        assertIterableEquals(routes, res.getRoutes());
+
+        // The definitions must be in the same order as a TreeMap keyed by the name.
+        for (List<? extends NadDef> defs : Arrays.asList(res.getClasses(), res.getEnums(), res.getModules())) {
+            assertEquals(new ArrayList<>(new TreeSet<>(names(defs))), names(defs));
+        }
+    }
+
+    @Test
+    void sorted() {
+        assertSorted(core.create(null, 1));
+        assertSorted(core.create(null, 4));
+    }
+
+    @Test
+    void duplicatedRoutes() {
+        List<NadRoute> first = core.create(null, 1).getRoutes();
+        List<NadRoute> second = core.create(null, 1).getRoutes();
+        List<NadRoute> res = NadContext.run(() -> {
+            for (int i = first.size() - 1; i >= 0; i--) NadContext.collectRoute(first.get(i));
+            second.forEach(NadContext::collectRoute);
+            return NadContext.dump().getRoutes();
+        }, null);
+
+        // Routes with the same sort key are kept only once, and the equal ones are kept in the collected order.
+        assertEquals(first.size(), res.size());
+        for (int i = 0; i < res.size(); i++) assertSame(first.get(i), res.get(i));
+    }
+
+    @Test
+    void duplicatedRoutesInAnyOrder() {
+        // The same handler method mapped by another pattern has the same sort key.
+        NadRoute route = core.create(null, 1).getRoutes().get(0);
+        NadRoute other = withPatterns(route, Collections.singletonList("/!"));
+        for (List<NadRoute> order : Arrays.asList(Arrays.asList(route, other), Arrays.asList(other, route))) {
+            for (int parallelism : new int[]{1, 4}) {
+                List<NadRoute> res = NadContext.run(() -> {
+                    order.forEach(NadContext::collectRoute);
+                    return NadContext.dump().getRoutes();
+                }, null, null, parallelism);
+                // The kept one is decided by the route info, never by the order of collection.
+                assertEquals(1, res.size());
+                assertSame(other, res.get(0));
+            }
+        }
+    }
+
+    @NonNull
+    private static NadRoute withPatterns(@NonNull NadRoute route, @NonNull List<String> patterns) {
+        return (NadRoute) Proxy.newProxyInstance(NadRoute.class.getClassLoader(), new Class<?>[]{NadRoute.class},
+                (proxy, method, args) -> "getPatterns".equals(method.getName()) ? patterns : method.invoke(route, args));
+    }
+}
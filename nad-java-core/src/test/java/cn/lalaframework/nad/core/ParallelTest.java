@@ -0,0 +1,38 @@
+package cn.lalaframework.nad.core;
+
+import cn.lalaframework.nad.TestApplication;
+import cn.lalaframework.nad.controllers.dto.Role;
+import cn.lalaframework.nad.interfaces.NadResult;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = TestApplication.class)
+class ParallelTest {
+    @Autowired
+    private Core core;
+
+    @Test
+    void sameAsSingleThread() throws JsonProcessingException {
+        ObjectMapper mapper = new ObjectMapper();
+        String expected = mapper.writeValueAsString(core.create(null, 1));
+        for (int i = 0; i < 10; i++) {
+            NadResult res = core.create(null, 4);
+            assertEquals(expected, mapper.writeValueAsString(res));
+        }
+    }
+
+    @Test
+    void rethrow() {
+        // The excluder is called by the pool threads, its error must be thrown to the caller.
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> core.create(clz -> {
+            if (clz == Role.class) throw new IllegalArgumentException("bad class");
+            return false;
+        }, 4));
+        assertEquals("bad class", e.getMessage());
+    }
+}
@@ -0,0 +1,173 @@
+package cn.lalaframework.nad.core;
+
+import cn.lalaframework.nad.TestApplication;
+import cn.lalaframework.nad.interfaces.NadResult;
+import cn.lalaframework.nad.models.NadContext;
+import cn.lalaframework.nad.models.NadJsonWriter;
+import cn.lalaframework.nad.models.NadResultImpl;
+import cn.lalaframework.nad.utils.ClassExcluder;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = TestApplication.class)
+class StreamTest {
+    @Autowired
+    private RequestMappingHandlerMapping rhMapping;
+
+    private byte[] stream(ObjectMapper mapper, int parallelism) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        return NadContext.run(() -> {
+            NadContext.collectSpringWeb(rhMapping);
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+                NadContext.dump(generator);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }, new ClassExcluder(ClassExcluder.DEFAULT_RULES), null, parallelism);
+    }
+
+    @Test
+    void drained() {
+        NadResult rest = NadContext.run(() -> {
+            NadContext.collectSpringWeb(rhMapping);
+            try (JsonGenerator generator = new ObjectMapper().getFactory().createGenerator(new ByteArrayOutputStream())) {
+                NadContext.dump(generator);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return NadContext.dump();
+        }, new ClassExcluder(ClassExcluder.DEFAULT_RULES), null, 1);
+        // Every definition is released once it is written.
+        assertTrue(rest.getModules().isEmpty());
+        assertTrue(rest.getRoutes().isEmpty());
+        assertTrue(rest.getClasses().isEmpty());
+        assertTrue(rest.getEnums().isEmpty());
+    }
+
+    @Test
+    void sameAsDump() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        NadResult result = NadContext.run(() -> {
+            NadContext.collectSpringWeb(rhMapping);
+            return NadContext.dump();
+        }, new ClassExcluder(ClassExcluder.DEFAULT_RULES), null, 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            NadJsonWriter.of(generator).write(result);
+        }
+        byte[] expected = out.toByteArray();
+        assertArrayEquals(expected, stream(mapper, 1));
+        assertArrayEquals(expected, stream(mapper, 4));
+        // The dedicated writer writes the same fields and values as an ObjectMapper.
+        assertEquals(mapper.valueToTree(result), mapper.readTree(expected));
+    }
+
+    private static <T> List<T> repeat(List<T> list, int times) {
+        List<T> res = new ArrayList<>();
+        for (int i = 0; i < times; i++) res.addAll(list);
+        return res;
+    }
+
+    private static byte[] writeParallel(ObjectMapper mapper, NadResult result, int parallelism) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NadJsonWriter.writeParallel(result, mapper.getFactory(), out, null, parallelism);
+        return out.toByteArray();
+    }
+
+    @Test
+    void parallel() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        NadResult result = NadContext.run(() -> {
+            NadContext.collectSpringWeb(rhMapping);
+            return NadContext.dump();
+        }, new ClassExcluder(ClassExcluder.DEFAULT_RULES), null, 1);
+        // Large enough to be written in many chunks.
+        NadResult large = new NadResultImpl(repeat(result.getModules(), 100), repeat(result.getRoutes(), 100),
+                repeat(result.getClasses(), 100), repeat(result.getEnums(), 100));
+        byte[] expected = writeParallel(mapper, large, 1);
+        assertArrayEquals(expected, writeParallel(mapper, large, 4));
+        assertEquals(mapper.valueToTree(large), mapper.readTree(expected));
+
+        // The chunks are written by a caller-supplied executor, which is not shut down.
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            NadJsonWriter.writeParallel(large, mapper.getFactory(), out, executor, 4);
+            assertArrayEquals(expected, out.toByteArray());
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdown();
+        }
+
+        NadResult empty = new NadResultImpl(Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList());
+        assertArrayEquals(writeParallel(mapper, empty, 1), writeParallel(mapper, empty, 4));
+    }
+
+    private static void assertOffsets(ObjectMapper mapper, List<?> items, byte[] data,
+                                      NadJsonWriter.ItemOffsets offsets) throws IOException {
+        assertEquals(items.size(), offsets.size());
+        for (int i = 0; i < items.size(); i++) {
+            int start = Math.toIntExact(offsets.startOf(i));
+            int end = Math.toIntExact(offsets.endOf(i));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+                NadJsonWriter.of(generator).write(items.get(i));
+            }
+            assertArrayEquals(out.toByteArray(), Arrays.copyOfRange(data, start, end));
+        }
+    }
+
+    @Test
+    void offsets() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        NadResult result = NadContext.run(() -> {
+            NadContext.collectSpringWeb(rhMapping);
+            return NadContext.dump();
+        }, new ClassExcluder(ClassExcluder.DEFAULT_RULES), null, 1);
+        NadResult large = new NadResultImpl(repeat(result.getModules(), 20), repeat(result.getRoutes(), 20),
+                repeat(result.getClasses(), 20), repeat(result.getEnums(), 20));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Map<String, NadJsonWriter.ItemOffsets> offsets = NadJsonWriter.writeParallel(large, mapper.getFactory(), out,
+                null, 1);
+        byte[] data = out.toByteArray();
+        assertEquals(Arrays.asList("modules", "routes", "classes", "enums"), new ArrayList<>(offsets.keySet()));
+        assertOffsets(mapper, large.getModules(), data, offsets.get("modules"));
+        assertOffsets(mapper, large.getRoutes(), data, offsets.get("routes"));
+        assertOffsets(mapper, large.getClasses(), data, offsets.get("classes"));
+        assertOffsets(mapper, large.getEnums(), data, offsets.get("enums"));
+
+        // The items are at the same offsets however many threads write them.
+        out.reset();
+        Map<String, NadJsonWriter.ItemOffsets> parallel = NadJsonWriter.writeParallel(large, mapper.getFactory(), out,
+                null, 4);
+        assertArrayEquals(data, out.toByteArray());
+        for (String field : offsets.keySet()) {
+            NadJsonWriter.ItemOffsets expected = offsets.get(field);
+            NadJsonWriter.ItemOffsets actual = parallel.get(field);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.startOf(i), actual.startOf(i));
+                assertEquals(expected.endOf(i), actual.endOf(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package cn.lalaframework.nad.core;
+
+import cn.lalaframework.nad.TestApplication;
+import cn.lalaframework.nad.controllers.MyController;
+import cn.lalaframework.nad.controllers.OrderController;
+import cn.lalaframework.nad.controllers.dto.Order;
+import cn.lalaframework.nad.controllers.dto.OrderItem;
+import cn.lalaframework.nad.controllers.dto.Role;
+import cn.lalaframework.nad.controllers.dto.User;
+import cn.lalaframework.nad.interfaces.NadDef;
+import cn.lalaframework.nad.interfaces.NadResult;
+import cn.lalaframework.nad.interfaces.NadRoute;
+import cn.lalaframework.nad.models.NadContext;
+import cn.lalaframework.nad.models.NadDependencyGraph;
+import cn.lalaframework.nad.models.NadResultImpl;
+import cn.lalaframework.nad.utils.ClassExcluder;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = TestApplication.class)
+class SubsetTest {
+    private static final String MY = MyController.class.getTypeName();
+    private static final String ORDER = OrderController.class.getTypeName();
+
+    @Autowired
+    private Core core;
+
+    @Autowired
+    private RequestMappingHandlerMapping rhMapping;
+
+    private static List<String> names(List<? extends NadDef> defs) {
+        return defs.stream().map(NadDef::getName).collect(Collectors.toList());
+    }
+
+    private NadDependencyGraph createGraph(int parallelism) {
+        return core.createGraph(new ClassExcluder(ClassExcluder.DEFAULT_RULES), parallelism);
+    }
+
+    @Test
+    void dependencies() {
+        Map<String, List<String>> dependencies = NadContext.run(() -> {
+            NadContext.collectSpringWeb(rhMapping);
+            return NadContext.dumpDependencies();
+        }, new ClassExcluder(ClassExcluder.DEFAULT_RULES));
+        assertEquals(Collections.singletonList(Order.class.getTypeName()), dependencies.get(ORDER));
+        assertEquals(Arrays.asList(OrderItem.class.getTypeName(), User.class.getTypeName()),
+                dependencies.get(Order.class.getTypeName()));
+        // Excluded classes such as java.lang.Long never appear.
+        assertEquals(Collections.emptyList(), dependencies.get(OrderItem.class.getTypeName()));
+    }
+
+    @Test
+    void subset() {
+        for (int parallelism : new int[]{1, 4}) {
+            NadDependencyGraph graph = createGraph(parallelism);
+
+            NadResult order = graph.subset(Collections.singletonList(ORDER));
+            assertEquals(Collections.singletonList(ORDER), names(order.getModules()));
+            assertTrue(order.getRoutes().stream().map(NadRoute::getBean).allMatch(ORDER::equals));
+            assertFalse(order.getRoutes().isEmpty());
+            // The buyer of an order is a User, which is shared with MyController.
+            assertEquals(Arrays.asList(Order.class.getTypeName(), OrderItem.class.getTypeName(), User.class.getTypeName()),
+                    names(order.getClasses()));
+            assertTrue(order.getEnums().isEmpty());
+
+            NadResult my = graph.subset(Collections.singletonList(MY));
+            assertTrue(names(my.getClasses()).contains(User.class.getTypeName()));
+            assertFalse(names(my.getClasses()).contains(Order.class.getTypeName()));
+            assertEquals(Collections.singletonList(Role.class.getTypeName()), names(my.getEnums()));
+
+            NadResult empty = graph.subset(Collections.singletonList("not.Exists"));
+            assertTrue(empty.getModules().isEmpty());
+            assertTrue(empty.getRoutes().isEmpty());
+            assertTrue(empty.getClasses().isEmpty());
+        }
+    }
+
+    @Test
+    void all() {
+        // The subset of all modules is the same as the full result.
+        NadResult full = core.create(new ClassExcluder(ClassExcluder.DEFAULT_RULES));
+        NadResult all = createGraph(1).subset(names(full.getModules()));
+        assertEquals(names(full.getModules()), names(all.getModules()));
+        assertEquals(names(full.getClasses()), names(all.getClasses()));
+        assertEquals(names(full.getEnums()), names(all.getEnums()));
+        assertEquals(full.getRoutes().stream().map(NadRoute::getSortKey).collect(Collectors.toList()),
+                all.getRoutes().stream().map(NadRoute::getSortKey).collect(Collectors.toList()));
+    }
+
+    private static void assertSameResult(NadResult expected, NadResult actual) {
+        assertEquals(names(expected.getModules()), names(actual.getModules()));
+        assertEquals(names(expected.getClasses()), names(actual.getClasses()));
+        assertEquals(names(expected.getEnums()), names(actual.getEnums()));
+        assertEquals(expected.getRoutes().stream().map(NadRoute::getSortKey).collect(Collectors.toList()),
+                actual.getRoutes().stream().map(NadRoute::getSortKey).collect(Collectors.toList()));
+    }
+
+    @Test
+    void merge() {
+        NadDependencyGraph graph = createGraph(1);
+        List<String> modules = Collections.singletonList(ORDER);
+        NadDependencyGraph partial = NadContext.run(() -> {
+            NadContext.collectSpringWeb(rhMapping, modules);
+            return new NadDependencyGraph(NadContext.dump(), NadContext.dumpDependencies());
+        }, new ClassExcluder(ClassExcluder.DEFAULT_RULES));
+        assertEquals(modules, names(partial.getResult().getModules()));
+
+        // Recollecting a module results in the same defs as a full collection.
+        NadDependencyGraph merged = graph.merge(partial, modules);
+        assertSameResult(graph.getResult(), merged.getResult());
+        assertEquals(graph.getClosure(modules), merged.getClosure(modules));
+        // The definitions of other modules are kept as they are.
+        NadDef role = merged.getResult().getEnums().stream()
+                .filter(i -> i.getName().equals(Role.class.getTypeName())).findFirst().orElse(null);
+        assertSame(graph.getResult().getEnums().stream()
+                .filter(i -> i.getName().equals(Role.class.getTypeName())).findFirst().orElse(null), role);
+
+        // A removed module is absent in the partial graph, and the definitions only reachable from it are dropped.
+        NadDependencyGraph empty = new NadDependencyGraph(
+                new NadResultImpl(new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>()),
+                Collections.emptyMap());
+        NadDependencyGraph removed = graph.merge(empty, modules);
+        List<String> others = names(graph.getResult().getModules());
+        others.remove(ORDER);
+        assertSameResult(graph.subset(others), removed.getResult());
+        assertFalse(names(removed.getResult().getClasses()).contains(Order.class.getTypeName()));
+        assertTrue(names(removed.getResult().getClasses()).contains(User.class.getTypeName()));
+    }
+}
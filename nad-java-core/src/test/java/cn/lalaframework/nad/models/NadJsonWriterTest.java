@@ -0,0 +1,97 @@
+package cn.lalaframework.nad.models;
+
+import cn.lalaframework.nad.interfaces.NadAnnotation;
+import cn.lalaframework.nad.interfaces.NadEnum;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NadJsonWriterTest {
+    @ComponentScan(basePackageClasses = String.class, lazyInit = true,
+            excludeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = Integer.class))
+    static class Scanned {
+    }
+
+    enum Level {
+        LOW(1, Integer.class), HIGH(2, Level.class);
+
+        private final int weight;
+
+        private final Class<?> type;
+
+        Level(int weight, Class<?> type) {
+            this.weight = weight;
+            this.type = type;
+        }
+    }
+
+    private static JsonNode write(JsonGenerator generator, StringWriter out, Object value) throws IOException {
+        NadJsonWriter writer = NadJsonWriter.of(generator);
+        if (value instanceof NadEnum) writer.writeEnum((NadEnum) value);
+        else writer.write(value);
+        generator.close();
+        return new ObjectMapper().readTree(out.toString());
+    }
+
+    @Test
+    void annotationAttributes() throws IOException {
+        NadAnnotation annotation = NadAnnotationImpl.fromAnnotatedElement(Scanned.class).get(0);
+        NadResultImpl result = new NadResultImpl(
+                Collections.singletonList(new NadModuleImpl(Scanned.class)),
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+        StringWriter out = new StringWriter();
+        JsonNode root = write(new JsonFactory().createGenerator(out), out, result);
+        JsonNode written = root.get("modules").get(0).get("annotations").get(0);
+        assertEquals(annotation.getType(), written.get("type").asText());
+        JsonNode attributes = written.get("attributes");
+        assertEquals("java.lang.String", attributes.get("basePackageClasses").get(0).asText());
+        assertTrue(attributes.get("lazyInit").asBoolean());
+        JsonNode filter = attributes.get("excludeFilters").get(0);
+        assertEquals(ComponentScan.Filter.class.getTypeName(), filter.get("type").asText());
+        assertEquals("ASSIGNABLE_TYPE", filter.at("/attributes/type").asText());
+        assertEquals("java.lang.Integer", filter.at("/attributes/classes/0").asText());
+    }
+
+    @Test
+    void withoutAnnotations() throws IOException {
+        NadResultImpl result = new NadResultImpl(
+                Collections.singletonList(new NadModuleImpl(Scanned.class)),
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+        StringWriter out = new StringWriter();
+        JsonGenerator generator = new JsonFactory().createGenerator(out);
+        NadJsonWriter.of(generator).withoutAnnotations().write(result);
+        generator.close();
+        JsonNode module = new ObjectMapper().readTree(out.toString()).get("modules").get(0);
+        assertEquals(Scanned.class.getTypeName(), module.get("name").asText());
+        // The field is kept, so the shape of the definitions is the same.
+        assertTrue(module.get("annotations").isArray());
+        assertEquals(0, module.get("annotations").size());
+    }
+
+    @Test
+    void enumConstants() throws IOException {
+        NadEnum nadEnum = NadContext.run(() -> new NadEnumImpl(Level.class), null);
+        StringWriter out = new StringWriter();
+        JsonNode constants = write(new JsonFactory().createGenerator(out), out, nadEnum).get("constants");
+        assertEquals("LOW", constants.get(0).get("value").asText());
+        assertEquals(1, constants.get(0).at("/properties/weight").asInt());
+        assertEquals("java.lang.Integer", constants.get(0).at("/properties/type").asText());
+
+        // The enum values are written by the codec if there is one.
+        out = new StringWriter();
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.WRITE_ENUMS_USING_INDEX);
+        constants = write(mapper.getFactory().createGenerator(out), out, nadEnum).get("constants");
+        assertEquals(1, constants.get(1).get("value").asInt());
+    }
+}
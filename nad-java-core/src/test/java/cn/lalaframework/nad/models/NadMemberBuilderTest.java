@@ -3,8 +3,12 @@ package cn.lalaframework.nad.models;
 import org.junit.jupiter.api.Test;
 import org.springframework.test.util.ReflectionTestUtils;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 
 class NadMemberBuilderTest {
@@ -16,4 +20,38 @@ class NadMemberBuilderTest {
         Object res = ReflectionTestUtils.invokeMethod(nadMember, "getType");
         assertEquals("unknown", res);
     }
-}
\ No newline at end of file
+
+    static class Box implements Supplier<String>, Comparable<Box> {
+        @Override
+        public String get() {
+            return "";
+        }
+
+        @Override
+        public int compareTo(Box o) {
+            return 0;
+        }
+
+        public void set(int value) {
+        }
+
+        public void set(String value) {
+        }
+    }
+
+    @Test
+    void getDeclaredMethods() {
+        List<Method> methods = NadMemberBuilder.getDeclaredMethods(Box.class);
+        List<String> names = methods.stream().map(Method::getName).collect(Collectors.toList());
+        assertEquals(names.stream().sorted().collect(Collectors.toList()), names);
+        // A bridge method comes before the method it bridges to.
+        Method get = methods.get(names.lastIndexOf("get"));
+        assertFalse(get.isBridge());
+        assertEquals(String.class, get.getReturnType());
+        assertTrue(methods.get(names.indexOf("get")).isBridge());
+        assertEquals(Box.class, methods.get(names.lastIndexOf("compareTo")).getParameterTypes()[0]);
+        // Overloads are ordered by parameter types.
+        assertEquals(int.class, methods.get(names.indexOf("set")).getParameterTypes()[0]);
+        assertEquals(methods, NadMemberBuilder.getDeclaredMethods(Box.class));
+    }
+}
@@ -0,0 +1,69 @@
+package cn.lalaframework.nad.models;
+
+import cn.lalaframework.nad.interfaces.NadAnnotation;
+import cn.lalaframework.nad.interfaces.NadMember;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NadPoolsTest {
+    static class Foo {
+        @JsonProperty(value = "id", required = true)
+        private Long id;
+
+        public Long getId() {
+            return id;
+        }
+    }
+
+    static class Bar {
+        @JsonProperty(value = "id", required = true)
+        private Long id;
+
+        public Long getId() {
+            return id;
+        }
+    }
+
+    private static NadMember findId(Class<?> clz) {
+        return NadMemberBuilder.buildMemberList(clz, new ArrayList<>()).stream()
+                .filter(m -> m.getName().equals("id")).findFirst().orElseThrow(IllegalStateException::new);
+    }
+
+    @Test
+    void annotations() throws NoSuchFieldException {
+        List<NadAnnotation> foo = NadAnnotationImpl.fromAnnotatedElement(Foo.class.getDeclaredField("id"));
+        List<NadAnnotation> bar = NadAnnotationImpl.fromAnnotatedElement(Bar.class.getDeclaredField("id"));
+        assertSame(foo, bar);
+        assertEquals("id", foo.get(0).getAttributes().get("value"));
+        assertThrows(UnsupportedOperationException.class, () -> foo.get(0).getAttributes().put("value", "x"));
+        assertSame(NadAnnotationImpl.fromArray(new Annotation[0]), NadAnnotationImpl.fromArray(new Annotation[0]));
+    }
+
+    @Test
+    void members() {
+        NadMember foo = findId(Foo.class);
+        assertSame(foo, findId(Bar.class));
+        assertEquals(Long.class.getTypeName(), foo.getType());
+    }
+
+    @Test
+    void shared() throws NoSuchFieldException {
+        Annotation[] annotations = Foo.class.getDeclaredField("id").getDeclaredAnnotations();
+        List<NadAnnotation> first = NadAnnotationImpl.fromArray(annotations);
+        // Equal inputs share the same list and the same annotations, rather than a copy for each element.
+        for (int i = 0; i < 1000; i++) assertSame(first, NadAnnotationImpl.fromArray(annotations));
+        for (int i = 0; i < annotations.length; i++) {
+            assertSame(first.get(i), NadPools.annotations.intern(new NadAnnotationImpl(annotations[i])));
+        }
+        NadMember member = findId(Foo.class);
+        // The annotations of the field are the same list as well.
+        assertTrue(member.getAnnotations().stream().anyMatch(list -> list == first));
+        assertSame(member, NadPools.members.intern(findId(Bar.class)));
+    }
+}
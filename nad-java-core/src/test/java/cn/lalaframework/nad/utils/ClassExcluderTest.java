@@ -39,4 +39,22 @@ class ClassExcluderTest {
         assertTrue(filter.matches(String.class));
         assertFalse(filter.matches(NadResult.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    void defaultRules() {
+        ClassFilter filter = new ClassExcluder(ClassExcluder.DEFAULT_RULES);
+        assertTrue(filter.matches(String.class));
+        assertTrue(filter.matches(ClassFilter.class));
+        assertFalse(filter.matches(NadResult.class));
+    }
+
+    @Test
+    void addRuleAfterMatches() {
+        ClassExcluder filter = new ClassExcluder();
+        assertFalse(filter.matches(String.class));
+        // The cached decisions must be dropped when a rule is added.
+        filter.addRule("java.*");
+        assertTrue(filter.matches(String.class));
+        assertTrue(filter.matches(String[].class));
+    }
+}
@@ -0,0 +1,55 @@
+package cn.lalaframework.nad.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PatternMatcherTest {
+    private static final List<String> RULES = Arrays.asList(
+            "java.*", "javax.servlet.*", "com.example.Foo", "com.example.Foo$Bar", "com.example.b*", "中文.类", "a"
+    );
+
+    @Test
+    void sameAsTree() {
+        PatternTree tree = new PatternTree();
+        RULES.forEach(tree::add);
+        PatternMatcher matcher = tree.compile();
+
+        // Compare with the tree on the rules, their prefixes and some random mutations of them.
+        char[] alphabet = "abjvx.*$Fo中类".toCharArray();
+        Random random = new Random(0);
+        for (String rule : RULES) {
+            for (int i = 0; i <= rule.length() + 1; i++) {
+                String prefix = rule.substring(0, Math.min(i, rule.length()));
+                String mutation = prefix + alphabet[random.nextInt(alphabet.length)];
+                assertEquals(tree.match(prefix), matcher.match(prefix), prefix);
+                assertEquals(tree.match(mutation), matcher.match(mutation), mutation);
+            }
+        }
+        assertTrue(matcher.match("java.lang.String"));
+        assertTrue(matcher.match("中文.类"));
+        assertFalse(matcher.match("中文.类型"));
+        assertFalse(matcher.match("com.example.Fox"));
+    }
+
+    @Test
+    void empty() {
+        PatternMatcher matcher = new PatternTree().compile();
+        assertTrue(matcher.match(""));
+        assertFalse(matcher.match("java.lang.String"));
+    }
+
+    @Test
+    void immutable() {
+        PatternTree tree = new PatternTree();
+        tree.add("java.*");
+        PatternMatcher matcher = tree.compile();
+        tree.add("com.*");
+        assertFalse(matcher.match("com.example.Foo"));
+        assertTrue(tree.compile().match("com.example.Foo"));
+    }
+}
@@ -1,54 +1,352 @@
 package cn.lalaframework.nad;
 
-import cn.lalaframework.nad.exceptions.NoHandlerMappingException;
+import cn.lalaframework.nad.exceptions.NoMessageConverterException;
 import cn.lalaframework.nad.interfaces.NadResult;
-import cn.lalaframework.nad.models.NadContext;
-import cn.lalaframework.nad.utils.ClassExcluder;
+import cn.lalaframework.nad.models.NadCompactResult;
+import cn.lalaframework.nad.models.NadDependencyGraph;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Import;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 @Controller
 @RequestMapping("nad/api")
 @ConditionalOnProperty(prefix = "nad", value = "enable", havingValue = "true")
 @Import(NadUiConfiguration.class)
-public class NadApiController {
+public class NadApiController implements DisposableBean {
+    /**
+     * The classpath location of the defs generated by nad-maven-plugin.
+     */
+    static final String PREBUILT_DEFS = "META-INF/nad/defs.json";
+
+    static final String PREBUILT_GZIP_DEFS = "META-INF/nad/defs.json.gz";
+
+    /**
+     * The media type of the compact defs, which can be requested by the Accept header instead of `?format=compact`.
+     */
+    public static final String COMPACT_MEDIA_TYPE = "application/vnd.nad.compact+json";
+
+    /**
+     * The default and the maximum count of items in a JSON page of routes, classes or enums.
+     */
+    static final int DEFAULT_PAGE_SIZE = 100;
+
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private static final Log logger = LogFactory.getLog(NadApiController.class);
+
     @Autowired(required = false)
     private RequestMappingHandlerMapping rhMapping;
 
+    @Autowired(required = false)
+    private RequestMappingHandlerAdapter rhAdapter;
+
+    /**
+     * How many threads are used to collect and serialize the defs, it is done in a single thread by default.
+     */
+    @Value("${nad.parallelism:1}")
+    private int parallelism;
+
+    /**
+     * Whether to serve the defs generated by nad-maven-plugin if they exist, which is disabled by default,
+     * since the plugin does not apply the MVC configuration of the application (such as path prefixes).
+     * They are served until the routes are changed (see refresh), then the defs are collected at runtime instead.
+     */
+    @Value("${nad.prebuilt:false}")
+    private boolean usePrebuilt;
+
+    /**
+     * Whether to prepare the defs in background once the application is ready, which is disabled by default.
+     */
+    @Value("${nad.warmup:false}")
+    private boolean warmup;
+
+    /**
+     * The minimum interval in milliseconds between two checks of changed routes by requests,
+     * the routes are never checked by requests by default.
+     */
+    @Value("${nad.refresh-interval:0}")
+    private long refreshInterval;
+
+    /**
+     * The time in milliseconds of the last check of changed routes by requests.
+     */
+    private final AtomicLong lastCheck = new AtomicLong();
+
+    /**
+     * The directory of snapshots, the defs are saved there once they are serialized, and are loaded by the next boot
+     * of the same application without any collection. Snapshots are disabled by default.
+     */
+    @Value("${nad.snapshot-dir:}")
+    private String snapshotDir = "";
+
+    /**
+     * Where the serialized defs are stored, either "heap" (by default) or "mapped".
+     * In the mapped storage, the defs are saved as a snapshot (in a directory private to the user in the temporary
+     * directory if nad.snapshot-dir is not specified, see NadSnapshot.privateDir) and served from the memory mapped
+     * files, and the collected defs are released from the heap.
+     */
+    @Value("${nad.storage:heap}")
+    private String storage = "heap";
+
+    /**
+     * How the defs are serialized as JSON, either "nad" (by default) or "converter".
+     * The "nad" serializer (NadJsonWriter) writes the defs directly without the settings of the host application,
+     * and the "converter" one uses the first HttpMessageConverter of the host application which can write JSON.
+     * NOTE: The "converter" one is always used if Jackson is not on the classpath.
+     */
+    @Value("${nad.serializer:nad}")
+    private String serializer = "nad";
+
+    /**
+     * The workers which collect and serialize the defs, they are created once with the cache.
+     */
     @Nullable
-    private NadResult defsCache;
-
-    synchronized void initCache() {
-        if (rhMapping == null) throw new NoHandlerMappingException();
-        if (defsCache == null) {
-            ClassExcluder filter = new ClassExcluder();
-            filter.addRule("java.*");
-            filter.addRule("javax.*");
-            filter.addRule("jakarta.*");
-            filter.addRule("org.springframework.*");
-            filter.addRule("com.alibaba.fastjson.*");
-            filter.addRule("com.fasterxml.jackson.*");
-            filter.addRule(NadApiController.class.getTypeName());
-            defsCache = NadContext.run(() -> {
-                NadContext.collectSpringWeb(rhMapping);
-                return NadContext.dump();
-            }, filter);
+    private volatile NadWorkers workers;
+
+    /**
+     * The collected and serialized defs, it is created by the first use, once the settings are injected.
+     */
+    @Nullable
+    private volatile NadDefsCache cache;
+
+    /**
+     * Get the cache of defs, which is created once with its collaborators from the injected settings.
+     */
+    @NonNull
+    NadDefsCache getCache() {
+        NadDefsCache res = cache;
+        if (res != null) return res;
+        synchronized (this) {
+            res = cache;
+            if (res == null) {
+                NadWorkers created = workers;
+                if (created == null) {
+                    created = new NadWorkers();
+                    workers = created;
+                }
+                NadDefsEncoder encoder = new NadDefsEncoder(rhAdapter, serializer, parallelism);
+                res = new NadDefsCache(rhMapping, encoder, created, parallelism, usePrebuilt, snapshotDir,
+                        "mapped".equalsIgnoreCase(storage));
+                cache = res;
+            }
+            return res;
         }
     }
 
-    @GetMapping("defs")
-    @ResponseBody
+    /**
+     * Stop the workers once the context is closed.
+     */
+    @Override
+    public void destroy() {
+        NadWorkers current = workers;
+        if (current != null) current.shutdown();
+    }
+
+    /**
+     * Recollect the modules whose routes are changed since the served defs were prepared, such as by
+     * RequestMappingHandlerMapping.registerMapping, the other modules and definitions are kept as they are.
+     * The defs are collected if they have not been.
+     */
+    @NonNull
+    public CompletableFuture<NadDependencyGraph> refresh() {
+        return getCache().refresh();
+    }
+
+    /**
+     * Check the changed routes by a request, at most once per refreshInterval.
+     */
+    private void checkRefresh() {
+        if (refreshInterval <= 0) return;
+        long now = System.currentTimeMillis();
+        long last = lastCheck.get();
+        if (now - last >= refreshInterval && lastCheck.compareAndSet(last, now)) refreshIfServed();
+    }
+
+    /**
+     * Check the changed routes once a context is refreshed, if any defs have been served.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void onContextRefreshed() {
+        refreshIfServed();
+    }
+
+    /**
+     * Refresh the defs if the routes are changed since the served defs were prepared, whether they are collected,
+     * prebuilt or loaded from a snapshot. Nothing is done if nothing has been served, the cache is not created for it.
+     */
+    private void refreshIfServed() {
+        NadDefsCache current = cache;
+        if (current != null) current.refreshIfChanged();
+    }
+
+    /**
+     * Prepare the defs in background, so that the first request does not wait for the collection.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!warmup) return;
+        long start = System.nanoTime();
+        getCache().payload(Thread.MIN_PRIORITY).whenComplete((payload, e) -> {
+            if (e == null) {
+                long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                logger.info("Nad defs are warmed up in " + ms + " ms");
+            } else {
+                logger.warn("Failed to warm up the Nad defs, they will be prepared by the first request", e);
+            }
+        });
+    }
+
+    /**
+     * Wait for the shared computation, and rethrow its failure as it is.
+     */
+    @NonNull
+    private static <T> T await(@NonNull CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+
+    @NonNull
+    private static CompletableFuture<ResponseEntity<?>> badRequest(@NonNull String message) {
+        return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(message));
+    }
+
     @NonNull
     public NadResult getDefs() {
-        if (defsCache == null) initCache();
-        return defsCache;
+        return getGraph().getResult();
+    }
+
+    @NonNull
+    public NadDependencyGraph getGraph() {
+        return await(getCache().graph(Thread.NORM_PRIORITY));
+    }
+
+    /**
+     * Respond the defs, or a self-contained subset of them if some modules are specified.
+     * The response is completed asynchronously, so no servlet thread is held while the defs are being collected.
+     * NOTE: A subset is always taken from the defs collected at runtime, even if the prebuilt defs exist.
+     *
+     * The compact defs (see NadCompactResult) are responded if they are requested by `?format=compact` or by
+     * `Accept: application/vnd.nad.compact+json`, and the defs are encoded as CBOR or Smile if it is accepted
+     * (see NadDefsEncoder.selectMediaType).
+     *
+     * A projection of the defs is responded if `fields` or `annotations=false` is specified, it is sliced from the
+     * serialized defs (see NadDefsSections), and it cannot be combined with the other options.
+     *
+     * @param modules        The names of modules (controller classes), such as `?modules=com.x.A,com.x.B`.
+     * @param fields         The fields of defs to respond, such as `?fields=routes,enums`, all fields by default.
+     * @param annotations    Whether to respond the annotations, otherwise every list of annotations is empty.
+     * @param format         The format of defs, either "compact" or "full" (by default).
+     * @param accept         The value of Accept header.
+     * @param acceptEncoding The value of Accept-Encoding header.
+     */
+    @GetMapping("defs")
+    @NonNull
+    public CompletableFuture<ResponseEntity<?>> defs(@Nullable @RequestParam(value = "modules", required = false) List<String> modules,
+                                                     @Nullable @RequestParam(value = "fields", required = false) List<String> fields,
+                                                     @Nullable @RequestParam(value = "annotations", required = false) Boolean annotations,
+                                                     @Nullable @RequestParam(value = "format", required = false) String format,
+                                                     @Nullable @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                     @Nullable @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        checkRefresh();
+        NadDefsCache current = getCache();
+        NadDefsEncoder encoder = current.getEncoder();
+        boolean compact = NadDefsEncoder.isCompact(format, accept);
+        MediaType mediaType = encoder.selectMediaType(accept);
+        boolean withAnnotations = !Boolean.FALSE.equals(annotations);
+        if ((fields != null && !fields.isEmpty()) || !withAnnotations) {
+            if ((modules != null && !modules.isEmpty()) || compact || !MediaType.APPLICATION_JSON.equals(mediaType)) {
+                return badRequest("A projection can be only taken from the full JSON defs");
+            }
+            List<String> selected;
+            try {
+                selected = NadDefsSections.normalizeFields(fields == null || fields.isEmpty() ? NadDefsSections.FIELDS : fields);
+            } catch (IllegalArgumentException e) {
+                return badRequest(e.getMessage());
+            }
+            if (fields == null || fields.isEmpty()) {
+                return current.barePayload().<ResponseEntity<?>>thenApply(payload -> payload.toResponse(acceptEncoding));
+            }
+            return current.projection(withAnnotations, selected)
+                    .<ResponseEntity<?>>thenApply(payload -> payload.toResponse(acceptEncoding));
+        }
+        if (modules != null && !modules.isEmpty()) {
+            if (!encoder.hasConverters()) {
+                CompletableFuture<ResponseEntity<?>> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new NoMessageConverterException());
+                return failed;
+            }
+            return current.subset(modules, compact, mediaType, acceptEncoding);
+        }
+        if (compact || !MediaType.APPLICATION_JSON.equals(mediaType)) {
+            return current.encodedPayload(compact, mediaType).<ResponseEntity<?>>thenApply(payload -> payload.toResponse(acceptEncoding));
+        }
+        return current.payload(Thread.NORM_PRIORITY).<ResponseEntity<?>>thenApply(payload -> payload.toResponse(acceptEncoding));
+    }
+
+    /**
+     * Respond a page of routes, classes or enums, which are sorted in the same way as those of the defs.
+     * The page is sliced from the serialized defs, so its cost is proportional to its size.
+     *
+     * A JSON page is `{"items":[...],"next":"cursor"}`, and the next page is requested with `?cursor=` of it until it
+     * is null. With `Accept: application/x-ndjson`, each item is written as a line, all remaining items are responded
+     * unless a limit is specified, and the cursor of the next page is responded in the Nad-Next-Cursor header.
+     * NOTE: A cursor is the key of the last responded item, so it is still valid after the defs are refreshed.
+     *
+     * @param section The name of section, either "routes", "classes" or "enums".
+     * @param cursor  The cursor of the page, or null for the first page.
+     * @param limit   The maximum count of items, which is 100 by default and at most 1000 for JSON.
+     * @param accept  The value of Accept header.
+     */
+    @GetMapping("{section:routes|classes|enums}")
+    @NonNull
+    public CompletableFuture<ResponseEntity<?>> items(@NonNull @PathVariable("section") String section,
+                                                      @Nullable @RequestParam(value = "cursor", required = false) String cursor,
+                                                      @Nullable @RequestParam(value = "limit", required = false) Integer limit,
+                                                      @Nullable @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        checkRefresh();
+        boolean ndjson = NadDefsEncoder.acceptsNdjson(accept);
+        String after;
+        try {
+            after = cursor == null || cursor.isEmpty() ? null : NadDefsSections.decodeCursor(cursor);
+        } catch (IllegalArgumentException e) {
+            return badRequest("Invalid cursor");
+        }
+        if (limit != null && limit <= 0) return badRequest("The limit must be positive");
+        int count;
+        if (ndjson) count = limit == null ? Integer.MAX_VALUE : limit;
+        else count = limit == null ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        return getCache().sections(true).<ResponseEntity<?>>thenApply(sections -> sections.page(section, after, count, ndjson));
     }
 }
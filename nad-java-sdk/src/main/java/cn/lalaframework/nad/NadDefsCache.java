@@ -0,0 +1,574 @@
+package cn.lalaframework.nad;
+
+import cn.lalaframework.nad.exceptions.NoHandlerMappingException;
+import cn.lalaframework.nad.exceptions.NoMessageConverterException;
+import cn.lalaframework.nad.interfaces.NadResult;
+import cn.lalaframework.nad.models.NadCompactResult;
+import cn.lalaframework.nad.models.NadContext;
+import cn.lalaframework.nad.models.NadDependencyGraph;
+import cn.lalaframework.nad.models.NadDetachedResult;
+import cn.lalaframework.nad.utils.ClassExcluder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The collected and serialized defs, each of them is prepared once by the workers and shared by all requests
+ * (single-flight), until the routes are refreshed.
+ */
+final class NadDefsCache {
+    /**
+     * The rules of ClassExcluder, they are also a part of the snapshot key.
+     */
+    private static final List<String> EXCLUDER_RULES = Collections.unmodifiableList(Stream.concat(
+            ClassExcluder.DEFAULT_RULES.stream(),
+            Stream.of(NadApiController.class.getTypeName())
+    ).collect(Collectors.toList()));
+
+    private static final Log logger = LogFactory.getLog(NadDefsCache.class);
+
+    @Nullable
+    private final RequestMappingHandlerMapping rhMapping;
+
+    @NonNull
+    private final NadDefsEncoder encoder;
+
+    @NonNull
+    private final NadWorkers workers;
+
+    /**
+     * The excluder of every collection, including the refreshes, so that its rules are compiled once and the decision
+     * of each class is made once.
+     */
+    @NonNull
+    private final ClassExcluder excluder = new ClassExcluder(EXCLUDER_RULES);
+
+    /**
+     * How many threads collect the defs, see NadContext.run.
+     */
+    private final int parallelism;
+
+    /**
+     * Whether to serve the defs generated by nad-maven-plugin if they exist, see NadApiController.usePrebuilt.
+     */
+    private final boolean usePrebuilt;
+
+    /**
+     * The directory of snapshots, or empty if it is not specified, see NadApiController.snapshotDir.
+     */
+    @NonNull
+    private final String snapshotDir;
+
+    /**
+     * Whether the serialized defs are served from the memory mapped snapshot, see NadApiController.storage.
+     */
+    private final boolean mapped;
+
+    /**
+     * The current generation of the defs, which is replaced once the routes are refreshed.
+     */
+    private final AtomicReference<Generation> generationRef = new AtomicReference<>(new Generation(false, null));
+
+    NadDefsCache(@Nullable RequestMappingHandlerMapping rhMapping, @NonNull NadDefsEncoder encoder,
+                 @NonNull NadWorkers workers, int parallelism, boolean usePrebuilt, @NonNull String snapshotDir,
+                 boolean mapped) {
+        this.rhMapping = rhMapping;
+        this.encoder = encoder;
+        this.workers = workers;
+        this.parallelism = parallelism;
+        this.usePrebuilt = usePrebuilt;
+        this.snapshotDir = snapshotDir;
+        this.mapped = mapped;
+    }
+
+    @NonNull
+    NadDefsEncoder getEncoder() {
+        return encoder;
+    }
+
+    /**
+     * Whether the defs of the current routes have been requested, either in flight or completed.
+     */
+    boolean hasGraph() {
+        return generationRef.get().graphRef.get() != null;
+    }
+
+    /**
+     * Start the collection of the defs by a worker unless it is in flight or completed.
+     * A failed collection is forgotten, so that it will be retried by the next caller.
+     */
+    @NonNull
+    CompletableFuture<NadDependencyGraph> graph(int priority) {
+        return graph(generationRef.get(), priority);
+    }
+
+    @NonNull
+    private CompletableFuture<NadDependencyGraph> graph(@NonNull Generation gen, int priority) {
+        CompletableFuture<NadDependencyGraph> future = gen.graphRef.get();
+        if (future != null) return future;
+        CompletableFuture<NadDependencyGraph> created = new CompletableFuture<>();
+        if (!gen.graphRef.compareAndSet(null, created)) return graph(gen, priority);
+        RequestMappingHandlerMapping mapping = rhMapping;
+        if (mapping == null) {
+            fail(gen.graphRef, created, new NoHandlerMappingException());
+            return created;
+        }
+        execute(priority, gen.graphRef, created, () -> {
+            // The fingerprint is taken before the collection, so that a change during the collection is not missed.
+            gen.fingerprint.compareAndSet(null, NadRouteFingerprint.of(mapping));
+            created.complete(collect(mapping, null));
+        });
+        return created;
+    }
+
+    /**
+     * Recollect the modules whose routes are changed since the served defs were prepared, see refreshIfChanged.
+     * The defs are collected if they have not been.
+     */
+    @NonNull
+    CompletableFuture<NadDependencyGraph> refresh() {
+        CompletableFuture<NadDependencyGraph> refreshed = refreshIfChanged();
+        return refreshed != null ? refreshed : graph(Thread.NORM_PRIORITY);
+    }
+
+    /**
+     * Start a new generation of the defs if the routes are changed since the served defs were prepared, such as by
+     * RequestMappingHandlerMapping.registerMapping, whether they are collected at runtime, prebuilt or loaded from a
+     * snapshot. The changed modules are recollected and merged into the collected defs, the other modules and
+     * definitions are kept as they are, or all of them are collected if the defs are not collected at runtime.
+     * NOTE: The payloads of the previous generation are never published to the new one, even if they are in flight.
+     *
+     * @return The refreshed defs, or null if nothing is served yet or nothing is changed.
+     */
+    @Nullable
+    CompletableFuture<NadDependencyGraph> refreshIfChanged() {
+        Generation current = generationRef.get();
+        NadRouteFingerprint previous = current.fingerprint.get();
+        RequestMappingHandlerMapping mapping = rhMapping;
+        if (previous == null || mapping == null) return null;
+        NadRouteFingerprint next = NadRouteFingerprint.of(mapping);
+        Set<String> changed = next.diff(previous);
+        if (changed.isEmpty()) return null;
+        Generation refreshed = new Generation(true, next);
+        CompletableFuture<NadDependencyGraph> created = new CompletableFuture<>();
+        refreshed.graphRef.set(created);
+        if (!generationRef.compareAndSet(current, refreshed)) return refreshIfChanged();
+        CompletableFuture<NadDependencyGraph> collected = current.graphRef.get();
+        if (collected == null) {
+            execute(Thread.NORM_PRIORITY, refreshed.graphRef, created, () -> created.complete(collect(mapping, null)));
+            return created;
+        }
+        // The in-flight collection has taken the previous fingerprint, so it is merged once completed.
+        collected.whenComplete((graph, e) -> execute(Thread.NORM_PRIORITY, refreshed.graphRef, created,
+                () -> created.complete(e == null ? graph.merge(collect(mapping, changed), changed) : collect(mapping, null))));
+        return created;
+    }
+
+    /**
+     * Collect the defs with the dependency graph in the same transaction, so that subsets never need a recollection.
+     * NOTE: The defs are retained for subsets and the other formats, so they are dumped as a whole instead of being
+     * streamed and released by NadContext.dump(JsonGenerator).
+     *
+     * @param modules The modules to collect, or null to collect all of them.
+     */
+    @NonNull
+    private NadDependencyGraph collect(@NonNull RequestMappingHandlerMapping mapping, @Nullable Set<String> modules) {
+        return NadContext.run(() -> {
+            if (modules == null) NadContext.collectSpringWeb(mapping);
+            else NadContext.collectSpringWeb(mapping, modules);
+            return new NadDependencyGraph(encoder.detach(NadContext.dump()), NadContext.dumpDependencies());
+        }, excluder, null, parallelism);
+    }
+
+    /**
+     * Start the preparation of the payload unless it is in flight or completed.
+     * A failed preparation is forgotten, so that it will be retried by the next caller.
+     */
+    @NonNull
+    CompletableFuture<NadDefsPayload> payload(int priority) {
+        return payload(generationRef.get(), priority);
+    }
+
+    @NonNull
+    private CompletableFuture<NadDefsPayload> payload(@NonNull Generation gen, int priority) {
+        CompletableFuture<NadDefsPayload> future = gen.payloadRef.get();
+        if (future != null) return future;
+        CompletableFuture<NadDefsPayload> created = new CompletableFuture<>();
+        if (!gen.payloadRef.compareAndSet(null, created)) return payload(gen, priority);
+        // The prebuilt defs are no longer served once the routes are refreshed, as a snapshot is.
+        if (usePrebuilt && !gen.refreshed) {
+            ClassPathResource json = new ClassPathResource(NadApiController.PREBUILT_DEFS);
+            if (json.exists()) {
+                // The prebuilt defs are streamed from the classpath, so the defs are never collected at runtime,
+                // but the routes are fingerprinted, so that their changes are still refreshed.
+                ClassPathResource gzipJson = new ClassPathResource(NadApiController.PREBUILT_GZIP_DEFS);
+                RequestMappingHandlerMapping mapping = rhMapping;
+                execute(priority, gen.payloadRef, created, () -> {
+                    if (mapping != null) gen.fingerprint.compareAndSet(null, NadRouteFingerprint.of(mapping));
+                    created.complete(NadDefsPayload.fromResource(json, gzipJson.exists() ? gzipJson : null));
+                });
+                return created;
+            }
+        }
+        if (!encoder.hasConverters()) {
+            fail(gen.payloadRef, created, new NoMessageConverterException());
+            return created;
+        }
+        CompletableFuture<NadDefsPayload> source;
+        if ((snapshotDir.isEmpty() && !mapped) || rhMapping == null || gen.refreshed) {
+            source = serializePayload(gen, priority, null);
+        } else {
+            CompletableFuture<NadSnapshot> snapshot;
+            try {
+                // The classpath is fingerprinted by a worker, since it may walk the directories of classes.
+                snapshot = CompletableFuture.supplyAsync(() -> openSnapshot(gen), workers.withPriority(priority));
+            } catch (RejectedExecutionException e) {
+                fail(gen.payloadRef, created, e);
+                return created;
+            }
+            source = snapshot.thenCompose(opened -> {
+                NadDefsPayload loaded = loadSnapshot(opened);
+                return loaded != null ? CompletableFuture.completedFuture(loaded) : serializePayload(gen, priority, opened);
+            });
+        }
+        source.whenComplete((payload, e) -> {
+            if (e == null) created.complete(payload);
+            else fail(gen.payloadRef, created, e);
+        });
+        return created;
+    }
+
+    /**
+     * Start the preparation of a compact or binary encoded payload unless it is in flight or completed.
+     * These payloads are always encoded from the defs collected at runtime, and they are never saved as a snapshot.
+     *
+     * @param compact   Whether to encode the compact defs.
+     * @param mediaType The media type to encode the defs as.
+     */
+    @NonNull
+    CompletableFuture<NadDefsPayload> encodedPayload(boolean compact, @NonNull MediaType mediaType) {
+        return encodedPayload(generationRef.get(), compact, mediaType);
+    }
+
+    @NonNull
+    private CompletableFuture<NadDefsPayload> encodedPayload(@NonNull Generation gen, boolean compact,
+                                                             @NonNull MediaType mediaType) {
+        String key = (compact ? NadCompactResult.FORMAT : "full") + " " + mediaType;
+        AtomicReference<CompletableFuture<NadDefsPayload>> ref =
+                gen.encodedPayloadRefs.computeIfAbsent(key, k -> new AtomicReference<>());
+        CompletableFuture<NadDefsPayload> future = ref.get();
+        if (future != null) return future;
+        CompletableFuture<NadDefsPayload> created = new CompletableFuture<>();
+        if (!ref.compareAndSet(null, created)) return encodedPayload(gen, compact, mediaType);
+        if (!encoder.hasConverters()) {
+            fail(ref, created, new NoMessageConverterException());
+            return created;
+        }
+        graph(gen, Thread.NORM_PRIORITY)
+                .thenApplyAsync(graph -> {
+                    NadResult result = graph.getResult();
+                    return encoder.serialize(compact ? NadCompactResult.encode(result) : result, mediaType).precompress();
+                }, workers.withPriority(Thread.NORM_PRIORITY))
+                .whenComplete((payload, e) -> {
+                    if (e == null) created.complete(payload);
+                    else fail(ref, created, e);
+                });
+        return created;
+    }
+
+    /**
+     * Get the sections of the defs for paging and projections, which share the buffer of the payload, so nothing is
+     * serialized again. The sections are serialized from the defs collected at runtime only if the payload has no
+     * sections, such as the prebuilt defs.
+     *
+     * @param annotations Whether to write the annotations, otherwise the sections of the bare payload are used.
+     */
+    @NonNull
+    CompletableFuture<NadDefsSections> sections(boolean annotations) {
+        return sections(generationRef.get(), annotations);
+    }
+
+    @NonNull
+    private CompletableFuture<NadDefsSections> sections(@NonNull Generation gen, boolean annotations) {
+        if (!annotations) return barePayload(gen).thenApply(NadDefsPayload::getSections);
+        return payload(gen, Thread.NORM_PRIORITY).thenCompose(payload -> {
+            NadDefsSections sections = payload.getSections();
+            return sections != null ? CompletableFuture.completedFuture(sections) : collectedSections(gen);
+        });
+    }
+
+    /**
+     * Start the preparation of a projection of the defs unless it is in flight or completed, the projection is sliced
+     * from the sections and then hashed and compressed by a worker, see NadDefsSections.project.
+     *
+     * @param annotations Whether to write the annotations, see sections.
+     * @param fields      The normalized fields, see NadDefsSections.normalizeFields.
+     */
+    @NonNull
+    CompletableFuture<NadDefsPayload> projection(boolean annotations, @NonNull List<String> fields) {
+        return projection(generationRef.get(), annotations, fields);
+    }
+
+    @NonNull
+    private CompletableFuture<NadDefsPayload> projection(@NonNull Generation gen, boolean annotations,
+                                                         @NonNull List<String> fields) {
+        String key = annotations + " " + String.join(",", fields);
+        AtomicReference<CompletableFuture<NadDefsPayload>> ref =
+                gen.projectionRefs.computeIfAbsent(key, k -> new AtomicReference<>());
+        CompletableFuture<NadDefsPayload> future = ref.get();
+        if (future != null) return future;
+        CompletableFuture<NadDefsPayload> created = new CompletableFuture<>();
+        if (!ref.compareAndSet(null, created)) return projection(gen, annotations, fields);
+        sections(gen, annotations)
+                .thenApplyAsync(sections -> sections.project(fields), workers.withPriority(Thread.NORM_PRIORITY))
+                .whenComplete((payload, e) -> {
+                    if (e == null) created.complete(payload);
+                    else fail(ref, created, e);
+                });
+        return created;
+    }
+
+    /**
+     * Start the serialization of the sections from the defs collected at runtime unless it is in flight or completed.
+     */
+    @NonNull
+    private CompletableFuture<NadDefsSections> collectedSections(@NonNull Generation gen) {
+        CompletableFuture<NadDefsSections> future = gen.sectionsRef.get();
+        if (future != null) return future;
+        CompletableFuture<NadDefsSections> created = new CompletableFuture<>();
+        if (!gen.sectionsRef.compareAndSet(null, created)) return collectedSections(gen);
+        if (!encoder.hasConverters()) {
+            fail(gen.sectionsRef, created, new NoMessageConverterException());
+            return created;
+        }
+        graph(gen, Thread.NORM_PRIORITY)
+                .thenApplyAsync(graph -> encoder.serialize(graph.getResult(), MediaType.APPLICATION_JSON).getSections(),
+                        workers.withPriority(Thread.NORM_PRIORITY))
+                .whenComplete((sections, e) -> {
+                    if (e == null) created.complete(sections);
+                    else fail(gen.sectionsRef, created, e);
+                });
+        return created;
+    }
+
+    /**
+     * Start the serialization of the defs whose annotations are omitted unless it is in flight or completed.
+     * The annotations are stripped from the defs collected at runtime before the serialization
+     * (see NadDetachedResult.detach), so that any serializer omits them.
+     */
+    @NonNull
+    CompletableFuture<NadDefsPayload> barePayload() {
+        return barePayload(generationRef.get());
+    }
+
+    @NonNull
+    private CompletableFuture<NadDefsPayload> barePayload(@NonNull Generation gen) {
+        CompletableFuture<NadDefsPayload> future = gen.barePayloadRef.get();
+        if (future != null) return future;
+        CompletableFuture<NadDefsPayload> created = new CompletableFuture<>();
+        if (!gen.barePayloadRef.compareAndSet(null, created)) return barePayload(gen);
+        if (!encoder.hasConverters()) {
+            fail(gen.barePayloadRef, created, new NoMessageConverterException());
+            return created;
+        }
+        graph(gen, Thread.NORM_PRIORITY)
+                .thenApplyAsync(graph -> encoder.serialize(NadDetachedResult.detach(graph.getResult(), null, false),
+                        MediaType.APPLICATION_JSON).precompress(), workers.withPriority(Thread.NORM_PRIORITY))
+                .whenComplete((payload, e) -> {
+                    if (e == null) created.complete(payload);
+                    else fail(gen.barePayloadRef, created, e);
+                });
+        return created;
+    }
+
+    /**
+     * Respond a self-contained subset of the defs, which is serialized and compressed by a worker.
+     * The subsets are not cached, since they are keyed by any combination of modules.
+     *
+     * @param modules        The names of modules.
+     * @param compact        Whether to encode the compact defs.
+     * @param mediaType      The media type to encode the defs as.
+     * @param acceptEncoding The value of Accept-Encoding header.
+     */
+    @NonNull
+    CompletableFuture<ResponseEntity<?>> subset(@NonNull List<String> modules, boolean compact,
+                                                @NonNull MediaType mediaType, @Nullable String acceptEncoding) {
+        return graph(Thread.NORM_PRIORITY).thenApplyAsync(graph -> {
+            NadResult subset = graph.subset(modules);
+            return encoder.serialize(compact ? NadCompactResult.encode(subset) : subset, mediaType).toResponse(acceptEncoding);
+        }, workers.withPriority(Thread.NORM_PRIORITY));
+    }
+
+    /**
+     * Serialize the collected defs, and save them as a snapshot if it is specified.
+     * In the mapped storage, the saved snapshot is served instead, and the collected defs are released.
+     */
+    @NonNull
+    private CompletableFuture<NadDefsPayload> serializePayload(@NonNull Generation gen, int priority,
+                                                               @Nullable NadSnapshot snapshot) {
+        CompletableFuture<NadDependencyGraph> collected = graph(gen, priority);
+        // The defs are serialized only once, each request will be served with the same bytes.
+        return collected.thenApplyAsync(graph -> {
+            NadDefsPayload payload = encoder.serialize(graph.getResult(), MediaType.APPLICATION_JSON).precompress();
+            byte[] body = payload.getBytes(false);
+            byte[] gzipBody = payload.getBytes(true);
+            if (snapshot == null || body == null || gzipBody == null) return payload;
+            try {
+                snapshot.save(body, gzipBody, payload.getSections());
+                if (!mapped) return payload;
+                NadDefsPayload loaded = snapshot.load();
+                if (loaded == null) return payload;
+                // The defs will be collected again only if a subset is requested or the routes are refreshed,
+                // the fingerprint of the generation is kept for the latter.
+                gen.graphRef.compareAndSet(collected, null);
+                return loaded;
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Failed to save the snapshot of Nad defs", e);
+                return payload;
+            }
+        }, workers.withPriority(priority));
+    }
+
+    /**
+     * Open the snapshot of this application, or null if the application cannot be fingerprinted.
+     * The routes are fingerprinted for the generation too, so that their changes are refreshed even if the defs are
+     * loaded from the snapshot.
+     */
+    @Nullable
+    private NadSnapshot openSnapshot(@NonNull Generation gen) {
+        RequestMappingHandlerMapping mapping = rhMapping;
+        if (mapping == null) return null;
+        gen.fingerprint.compareAndSet(null, NadRouteFingerprint.of(mapping));
+        Set<Class<?>> controllers = new HashSet<>();
+        mapping.getHandlerMethods().values().forEach(i -> controllers.add(i.getBeanType()));
+        try {
+            String key = NadSnapshot.fingerprint(System.getProperty("java.class.path", ""), controllers,
+                    NadRouteFingerprint.describe(mapping), EXCLUDER_RULES, encoder.getSerializer(), encoder.getConverters());
+            Path dir = snapshotDir.isEmpty()
+                    ? NadSnapshot.privateDir(Paths.get(System.getProperty("java.io.tmpdir")))
+                    : Paths.get(snapshotDir);
+            return new NadSnapshot(dir, key);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to fingerprint the application for the snapshot of Nad defs", e);
+            return null;
+        }
+    }
+
+    @Nullable
+    private static NadDefsPayload loadSnapshot(@Nullable NadSnapshot snapshot) {
+        if (snapshot == null) return null;
+        try {
+            NadDefsPayload payload = snapshot.load();
+            if (payload != null) logger.info("Nad defs are loaded from the snapshot");
+            return payload;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to load the snapshot of Nad defs", e);
+            return null;
+        }
+    }
+
+    /**
+     * Run a task of a single-flight computation by a worker, the computation fails if the task fails or the workers
+     * are shut down.
+     */
+    private <T> void execute(int priority, @NonNull AtomicReference<CompletableFuture<T>> ref,
+                             @NonNull CompletableFuture<T> future, @NonNull Runnable task) {
+        try {
+            workers.withPriority(priority).execute(() -> {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    fail(ref, future, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            fail(ref, future, e);
+        }
+    }
+
+    /**
+     * Forget a failed computation, so that it will be retried by the next caller.
+     */
+    private static <T> void fail(@NonNull AtomicReference<CompletableFuture<T>> ref,
+                                 @NonNull CompletableFuture<T> future, @NonNull Throwable e) {
+        ref.compareAndSet(future, null);
+        future.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+    }
+
+    /**
+     * The defs prepared from the same routes, each payload is published only to the generation whose defs it is
+     * prepared from, so that a payload of the previous routes is never served once they are refreshed.
+     */
+    private static final class Generation {
+        /**
+         * Whether the routes have been refreshed, a snapshot is neither loaded nor saved since then,
+         * because the routes are no longer the same as those of the artifact.
+         */
+        final boolean refreshed;
+
+        /**
+         * The fingerprint of routes which the defs are prepared from, or null if nothing is prepared yet.
+         */
+        final AtomicReference<NadRouteFingerprint> fingerprint;
+
+        /**
+         * The in-flight or completed collection of the defs.
+         */
+        final AtomicReference<CompletableFuture<NadDependencyGraph>> graphRef = new AtomicReference<>();
+
+        /**
+         * The in-flight or completed payload of the defs.
+         */
+        final AtomicReference<CompletableFuture<NadDefsPayload>> payloadRef = new AtomicReference<>();
+
+        /**
+         * The in-flight or completed payloads of the compact or binary encoded defs, keyed by the format and the media
+         * type.
+         */
+        final ConcurrentMap<String, AtomicReference<CompletableFuture<NadDefsPayload>>> encodedPayloadRefs =
+                new ConcurrentHashMap<>();
+
+        /**
+         * The in-flight or completed sections of the defs collected at runtime, which are used only if the payload has
+         * no sections, such as the prebuilt defs.
+         */
+        final AtomicReference<CompletableFuture<NadDefsSections>> sectionsRef = new AtomicReference<>();
+
+        /**
+         * The in-flight or completed payload of the defs whose annotations are omitted.
+         */
+        final AtomicReference<CompletableFuture<NadDefsPayload>> barePayloadRef = new AtomicReference<>();
+
+        /**
+         * The in-flight or completed projections of the defs, keyed by the annotations and the fields.
+         */
+        final ConcurrentMap<String, AtomicReference<CompletableFuture<NadDefsPayload>>> projectionRefs =
+                new ConcurrentHashMap<>();
+
+        Generation(boolean refreshed, @Nullable NadRouteFingerprint fingerprint) {
+            this.refreshed = refreshed;
+            this.fingerprint = new AtomicReference<>(fingerprint);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package cn.lalaframework.nad;
+
+import cn.lalaframework.nad.exceptions.NoMessageConverterException;
+import cn.lalaframework.nad.interfaces.NadResult;
+import cn.lalaframework.nad.models.NadCompactResult;
+import cn.lalaframework.nad.models.NadDetachedResult;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The negotiation of the representation of defs by a request, and the serialization of defs into it with the message
+ * converters of the host application.
+ */
+final class NadDefsEncoder {
+    /**
+     * The binary encodings of defs, which are responded only if they are explicitly accepted and the host
+     * application has a HttpMessageConverter of them, such as the one registered by Spring if
+     * jackson-dataformat-cbor or jackson-dataformat-smile is on the classpath.
+     */
+    static final List<MediaType> BINARY_MEDIA_TYPES = Collections.unmodifiableList(Arrays.asList(
+            MediaType.APPLICATION_CBOR,
+            MediaType.valueOf("application/x-jackson-smile")
+    ));
+
+    @Nullable
+    private final RequestMappingHandlerAdapter rhAdapter;
+
+    /**
+     * The serializer of JSON, see NadApiController.serializer.
+     */
+    @NonNull
+    private final String serializer;
+
+    /**
+     * How many threads write a NadResult with NadJsonWriter.
+     */
+    private final int parallelism;
+
+    NadDefsEncoder(@Nullable RequestMappingHandlerAdapter rhAdapter, @NonNull String serializer, int parallelism) {
+        this.rhAdapter = rhAdapter;
+        this.serializer = serializer;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Whether the host application has message converters, which are required to serialize the defs.
+     */
+    boolean hasConverters() {
+        return rhAdapter != null;
+    }
+
+    /**
+     * Get the message converters of the host application.
+     *
+     * @throws NoMessageConverterException If there is no RequestMappingHandlerAdapter.
+     */
+    @NonNull
+    List<HttpMessageConverter<?>> getConverters() {
+        if (rhAdapter == null) throw new NoMessageConverterException();
+        return rhAdapter.getMessageConverters();
+    }
+
+    @NonNull
+    String getSerializer() {
+        return serializer;
+    }
+
+    /**
+     * Select the media type of defs by the Accept header. A binary encoding is selected only if it is preferred to
+     * JSON and it can be written by the host application, otherwise JSON is selected.
+     */
+    @NonNull
+    MediaType selectMediaType(@Nullable String accept) {
+        if (accept == null || rhAdapter == null) return MediaType.APPLICATION_JSON;
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MediaType.sortByQualityValue(accepted);
+        for (MediaType type : accepted) {
+            // The wildcards are not considered, so JSON is still responded by default.
+            if (type.getQualityValue() <= 0 || type.isWildcardType() || type.isWildcardSubtype()) continue;
+            for (MediaType binary : BINARY_MEDIA_TYPES) {
+                if (binary.equalsTypeAndSubtype(type) && NadDefsPayload.canWrite(rhAdapter.getMessageConverters(), binary)) {
+                    return binary;
+                }
+            }
+            if (MediaType.APPLICATION_JSON.isCompatibleWith(type) || type.getSubtype().endsWith("+json")) break;
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    /**
+     * Whether the compact defs are requested, either by `?format=compact` or by the Accept header.
+     */
+    static boolean isCompact(@Nullable String format, @Nullable String accept) {
+        if (format != null) return NadCompactResult.FORMAT.equalsIgnoreCase(format.trim());
+        if (accept == null) return false;
+        try {
+            MediaType compact = MediaType.valueOf(NadApiController.COMPACT_MEDIA_TYPE);
+            for (MediaType type : MediaType.parseMediaTypes(accept)) {
+                // A wildcard is not considered, so the plain defs are still responded by default.
+                if (type.getQualityValue() > 0 && compact.equalsTypeAndSubtype(type)) return true;
+            }
+        } catch (InvalidMediaTypeException ignored) {
+            // An invalid Accept header is treated as if it were absent.
+        }
+        return false;
+    }
+
+    /**
+     * Whether NDJSON is explicitly accepted by the Accept header.
+     */
+    static boolean acceptsNdjson(@Nullable String accept) {
+        if (accept == null) return false;
+        try {
+            for (MediaType type : MediaType.parseMediaTypes(accept)) {
+                if (type.getQualityValue() > 0 && NadDefsSections.NDJSON.equalsTypeAndSubtype(type)) return true;
+            }
+        } catch (InvalidMediaTypeException ignored) {
+            // An invalid Accept header is treated as if it were absent.
+        }
+        return false;
+    }
+
+    /**
+     * Whether JSON is written by NadJsonWriter, which is specified by nad.serializer and requires Jackson.
+     */
+    private boolean usesNadSerializer() {
+        return "nad".equalsIgnoreCase(serializer) && NadDefsPayload.JACKSON_PRESENT;
+    }
+
+    /**
+     * Serialize the defs as the media type, JSON is written by the serializer specified by nad.serializer.
+     * The offsets of items are recorded while a NadResult is written as JSON, see NadDefsPayload.getSections.
+     */
+    @NonNull
+    NadDefsPayload serialize(@NonNull Object value, @NonNull MediaType mediaType) {
+        List<HttpMessageConverter<?>> converters = getConverters();
+        if (MediaType.APPLICATION_JSON.equals(mediaType) && usesNadSerializer()) {
+            return NadDefsPayload.write(value, converters, parallelism);
+        }
+        if (MediaType.APPLICATION_JSON.equals(mediaType) && value instanceof NadResult) {
+            return NadDefsPayload.serializeItems((NadResult) value, converters);
+        }
+        return NadDefsPayload.serialize(value, converters, mediaType);
+    }
+
+    /**
+     * Detach the collected defs, so that the cached defs never pin the classes of the application,
+     * such as across the restarts of devtools or the redeployments in a shared container.
+     * The application values (such as the values of enum constants) are converted by the ObjectMapper of the host
+     * application if its first JSON converter is a Jackson one, see NadDetachedResult.
+     */
+    @NonNull
+    NadResult detach(@NonNull NadResult result) {
+        Function<Object, Object> valueMapper = rhAdapter != null && NadDefsPayload.JACKSON_PRESENT
+                ? NadJsonSerializer.valueMapper(rhAdapter.getMessageConverters()) : null;
+        return NadDetachedResult.detach(result, valueMapper);
+    }
+}
@@ -0,0 +1,566 @@
+package cn.lalaframework.nad;
+
+import cn.lalaframework.nad.exceptions.NoMessageConverterException;
+import cn.lalaframework.nad.interfaces.NadResult;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.util.ClassUtils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The serialized defs, which are prepared once and served as they are for every request.
+ */
+abstract class NadDefsPayload {
+    private static final String GZIP = "gzip";
+
+    /**
+     * Whether Jackson is on the classpath, which is required by NadJsonWriter.
+     */
+    static final boolean JACKSON_PRESENT =
+            ClassUtils.isPresent("com.fasterxml.jackson.databind.ObjectMapper", NadDefsPayload.class.getClassLoader())
+                    && ClassUtils.isPresent("com.fasterxml.jackson.core.JsonGenerator", NadDefsPayload.class.getClassLoader());
+
+    /**
+     * The SHA-256 of the JSON, which is the strong entity tag of this payload, or null if it cannot be hashed.
+     * Since the defs are serialized deterministically, all replicas of the same build have the same tag.
+     */
+    @Nullable
+    private final String hash;
+
+    /**
+     * The offsets of items in the JSON, or null if they are unknown.
+     */
+    @Nullable
+    private final NadDefsSections sections;
+
+    NadDefsPayload(@Nullable String hash, @Nullable NadDefsSections sections) {
+        this.hash = hash;
+        this.sections = sections;
+    }
+
+    /**
+     * Serialize an object with the first HttpMessageConverter which can write it as JSON,
+     * so that the payload is exactly the same as what the host application responds.
+     *
+     * @param value      The object to be serialized.
+     * @param converters The message converters of the host application.
+     */
+    @NonNull
+    static NadDefsPayload serialize(@NonNull Object value, @NonNull List<HttpMessageConverter<?>> converters) {
+        return serialize(value, converters, MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * Serialize an object with the first HttpMessageConverter which can write it as the given media type,
+     * such as a binary encoding of JSON (CBOR or Smile).
+     *
+     * @param value      The object to be serialized.
+     * @param converters The message converters of the host application.
+     * @param mediaType  The media type to serialize the object as.
+     */
+    @NonNull
+    static NadDefsPayload serialize(@NonNull Object value, @NonNull List<HttpMessageConverter<?>> converters,
+                                    @NonNull MediaType mediaType) {
+        for (HttpMessageConverter<?> converter : converters) {
+            if (!converter.canWrite(value.getClass(), mediaType)) continue;
+            @SuppressWarnings("unchecked")
+            HttpMessageConverter<Object> c = (HttpMessageConverter<Object>) converter;
+            BufferedOutputMessage message = new BufferedOutputMessage();
+            try {
+                c.write(value, mediaType, message);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            MediaType contentType = Optional.ofNullable(message.getHeaders().getContentType()).orElse(mediaType);
+            return new Bytes(contentType, message.out.toByteArray());
+        }
+        throw new NoMessageConverterException();
+    }
+
+    /**
+     * Serialize the defs as JSON by items, each item is serialized with the first HttpMessageConverter which can
+     * write it as JSON, and the lists of items are assembled into the defs, so that the offsets of items are known.
+     * NOTE: A line break is always an insignificant whitespace in JSON (it is escaped in strings), it is dropped so
+     * that an item of an indenting converter is still a line of NDJSON.
+     *
+     * @param result     The defs to be serialized.
+     * @param converters The message converters of the host application.
+     */
+    @NonNull
+    static NadDefsPayload serializeItems(@NonNull NadResult result, @NonNull List<HttpMessageConverter<?>> converters) {
+        List<List<?>> lists = Arrays.asList(result.getModules(), result.getRoutes(), result.getClasses(), result.getEnums());
+        int[] starts = new int[lists.size()];
+        int[][] ends = new int[lists.size()][];
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        for (int i = 0; i < lists.size(); i++) {
+            byte[] start = ((i == 0 ? "{\"" : "],\"") + NadDefsSections.FIELDS.get(i) + "\":[").getBytes(StandardCharsets.UTF_8);
+            out.write(start, 0, start.length);
+            starts[i] = out.size();
+            List<?> items = lists.get(i);
+            ends[i] = new int[items.size()];
+            for (int j = 0; j < items.size(); j++) {
+                if (j > 0) out.write(',');
+                byte[] item = serialize(items.get(j), converters).getBytes(false);
+                if (item == null) throw new IllegalStateException("The item is not serialized in the heap");
+                for (byte b : item) {
+                    if (b != '\n' && b != '\r') out.write(b);
+                }
+                ends[i][j] = out.size();
+            }
+        }
+        out.write(']');
+        out.write('}');
+        byte[] body = out.toByteArray();
+        return new Bytes(MediaType.APPLICATION_JSON, body, NadDefsSections.of(result, ByteBuffer.wrap(body), starts, ends));
+    }
+
+    /**
+     * Serialize an object as JSON with NadJsonWriter, which requires JACKSON_PRESENT, so that the payload does not depend on the settings of
+     * the host application, except that the application values are written as the host application writes them.
+     * The offsets of items of a NadResult are recorded while it is written, see getSections.
+     *
+     * @param value       The object to be serialized.
+     * @param converters  The message converters of the host application.
+     * @param parallelism How many threads write a NadResult.
+     */
+    @NonNull
+    static NadDefsPayload write(@NonNull Object value, @NonNull List<HttpMessageConverter<?>> converters, int parallelism) {
+        try {
+            if (!(value instanceof NadResult)) {
+                return new Bytes(MediaType.APPLICATION_JSON, NadJsonSerializer.serialize(value, converters, parallelism));
+            }
+            NadResult result = (NadResult) value;
+            int[] starts = new int[NadDefsSections.FIELDS.size()];
+            int[][] ends = new int[NadDefsSections.FIELDS.size()][];
+            byte[] body = NadJsonSerializer.serialize(result, converters, parallelism, starts, ends);
+            return new Bytes(MediaType.APPLICATION_JSON, body, NadDefsSections.of(result, ByteBuffer.wrap(body), starts, ends));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Whether any of the message converters can write the defs as the given media type.
+     */
+    static boolean canWrite(@NonNull List<HttpMessageConverter<?>> converters, @NonNull MediaType mediaType) {
+        for (HttpMessageConverter<?> converter : converters) {
+            if (converter.canWrite(Map.class, mediaType)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Create a payload from the prebuilt resources, which are generated by nad-maven-plugin.
+     * The resources are streamed for each request, so they never stay in the heap.
+     *
+     * @param json     The resource of defs.json.
+     * @param gzipJson The resource of defs.json.gz, or null if it does not exist.
+     */
+    @NonNull
+    static NadDefsPayload fromResource(@NonNull Resource json, @Nullable Resource gzipJson) {
+        return new Prebuilt(json, gzipJson, null);
+    }
+
+    /**
+     * Create a payload from the files of a snapshot, which are memory mapped, so they never stay in the heap,
+     * and all JVMs which map the same files share the same pages of memory.
+     *
+     * @param json     The file of defs.json.
+     * @param gzipJson The file of defs.json.gz, or null if it does not exist.
+     * @param index    The file of the index of sections (see NadDefsSections.writeIndex), or null if it does not exist.
+     * @throws IOException If a file cannot be mapped, or the index does not fit the defs.
+     */
+    @NonNull
+    static NadDefsPayload fromFile(@NonNull Path json, @Nullable Path gzipJson, @Nullable Path index) throws IOException {
+        ByteBuffer data = map(json);
+        NadDefsSections sections = null;
+        if (index != null) {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(index))) {
+                sections = NadDefsSections.readIndex(in, data);
+            }
+        }
+        return new Prebuilt(new BufferResource(data), gzipJson == null ? null : new BufferResource(map(gzipJson)), sections);
+    }
+
+    /**
+     * Create a payload from the slices of serialized defs, such as a projection (see NadDefsSections.project).
+     * The slices are hashed and compressed at once, so that no request does either, and only the gzip encoded body
+     * is copied into the heap.
+     *
+     * @param json The resource of slices, which is in the memory.
+     */
+    @NonNull
+    static NadDefsPayload fromSlices(@NonNull Resource json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        byte[] buffer = new byte[8192];
+        try (InputStream in = json.getInputStream(); GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) gz.write(buffer, 0, n);
+        } catch (IOException e) {
+            // The slices are in the memory, so they are always readable.
+            throw new UncheckedIOException(e);
+        }
+        return new Prebuilt(json, new ByteArrayResource(out.toByteArray()), null);
+    }
+
+    @NonNull
+    private static ByteBuffer map(@NonNull Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    @NonNull
+    private static byte[] gzip(@NonNull byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    @NonNull
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @NonNull
+    static String toHex(@NonNull byte[] digest) {
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte b : digest) sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+
+    /**
+     * Hash a resource by streaming it once, it is never loaded into the heap as a whole.
+     *
+     * @return The hex of hash, or null if the resource cannot be read.
+     */
+    @Nullable
+    private static String hash(@NonNull Resource resource) {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = new DigestInputStream(resource.getInputStream(), digest)) {
+            while (in.read(buffer) != -1) {
+                // The digest is updated by reading.
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Check if the gzip content coding is acceptable, according to the Accept-Encoding request header.
+     * NOTE: A coding with "q=0" is not acceptable, and the "*" matches any coding which is not listed.
+     *
+     * @param acceptEncoding The value of Accept-Encoding header.
+     */
+    static boolean acceptsGzip(@Nullable String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        Boolean wildcard = null;
+        for (String item : acceptEncoding.split(",")) {
+            String[] parts = item.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            boolean acceptable = true;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) acceptable = isPositive(param.substring(2));
+            }
+            if (GZIP.equals(coding) || "x-gzip".equals(coding)) return acceptable;
+            if ("*".equals(coding)) wildcard = acceptable;
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+
+    private static boolean isPositive(@NonNull String qValue) {
+        try {
+            return Double.parseDouble(qValue.trim()) > 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Get the strong entity tag of a representation of this payload.
+     * NOTE: The gzip encoded representation has a different tag, since the bytes are different.
+     *
+     * @param useGzip Whether the representation is gzip encoded.
+     * @return The quoted tag, or null if this payload cannot be hashed.
+     */
+    @Nullable
+    String getETag(boolean useGzip) {
+        if (hash == null) return null;
+        return "\"" + hash + (useGzip ? "-" + GZIP : "") + "\"";
+    }
+
+    /**
+     * Create a response builder with the common headers.
+     * The ETag header is set, so that a request with a matched If-None-Match is answered by 304 (Not Modified)
+     * without writing the body.
+     *
+     * @param contentType   The media type of the payload.
+     * @param contentLength The length of the body, or a negative number if it is unknown.
+     * @param useGzip       Whether the body is gzip encoded.
+     */
+    @NonNull
+    ResponseEntity.BodyBuilder ok(@NonNull MediaType contentType, long contentLength, boolean useGzip) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING, HttpHeaders.ACCEPT);
+        if (contentLength >= 0) builder.contentLength(contentLength);
+        if (useGzip) builder.header(HttpHeaders.CONTENT_ENCODING, GZIP);
+        String etag = getETag(useGzip);
+        if (etag != null) builder.eTag(etag);
+        return builder;
+    }
+
+    /**
+     * Create a response of this payload, without any serialization.
+     *
+     * @param acceptEncoding The value of Accept-Encoding header.
+     */
+    @NonNull
+    abstract ResponseEntity<?> toResponse(@Nullable String acceptEncoding);
+
+    /**
+     * Compress this payload ahead by the worker which prepares it, so that no request compresses it.
+     *
+     * @return This payload.
+     */
+    @NonNull
+    NadDefsPayload precompress() {
+        return this;
+    }
+
+    /**
+     * Get the serialized bytes of this payload, which are saved as a snapshot.
+     *
+     * @param useGzip Whether to get the gzip encoded bytes.
+     * @return The bytes, or null if the payload is not serialized in the heap.
+     */
+    @Nullable
+    byte[] getBytes(boolean useGzip) {
+        return null;
+    }
+
+    /**
+     * Get the offsets of items in the JSON, which serve the pages and projections of defs from the same buffer.
+     *
+     * @return The sections, or null if the offsets are unknown, such as those of the prebuilt defs.
+     */
+    @Nullable
+    NadDefsSections getSections() {
+        return sections;
+    }
+
+    /**
+     * Create a stream of a buffer, which reads from its position without any copy of it.
+     */
+    @NonNull
+    static InputStream newInputStream(@NonNull ByteBuffer buffer) {
+        ByteBuffer data = buffer.duplicate();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return data.hasRemaining() ? data.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(@NonNull byte[] b, int off, int len) {
+                if (len == 0) return 0;
+                if (!data.hasRemaining()) return -1;
+                int n = Math.min(len, data.remaining());
+                data.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return data.remaining();
+            }
+        };
+    }
+
+    /**
+     * The defs which are serialized into byte arrays.
+     */
+    private static class Bytes extends NadDefsPayload {
+        @NonNull
+        private final MediaType contentType;
+
+        @NonNull
+        private final byte[] body;
+
+        /**
+         * It is compressed by precompress, or at the first time it is requested if it is not cached, such as a subset.
+         */
+        @Nullable
+        private volatile byte[] gzipBody;
+
+        Bytes(@NonNull MediaType contentType, @NonNull byte[] body) {
+            this(contentType, body, null);
+        }
+
+        Bytes(@NonNull MediaType contentType, @NonNull byte[] body, @Nullable NadDefsSections sections) {
+            super(toHex(newDigest().digest(body)), sections);
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        @NonNull
+        private byte[] getGzipBody() {
+            byte[] res = gzipBody;
+            if (res == null) {
+                res = gzip(body);
+                gzipBody = res;
+            }
+            return res;
+        }
+
+        @Override
+        @NonNull
+        NadDefsPayload precompress() {
+            getGzipBody();
+            return this;
+        }
+
+        @Override
+        @NonNull
+        ResponseEntity<byte[]> toResponse(@Nullable String acceptEncoding) {
+            boolean useGzip = acceptsGzip(acceptEncoding);
+            byte[] data = useGzip ? getGzipBody() : body;
+            return ok(contentType, data.length, useGzip).body(data);
+        }
+
+        @Override
+        @NonNull
+        byte[] getBytes(boolean useGzip) {
+            return useGzip ? getGzipBody() : body;
+        }
+    }
+
+    /**
+     * The defs which are prebuilt as resources, either the classpath resources, the buffers of a snapshot, or the
+     * slices of serialized defs.
+     */
+    private static class Prebuilt extends NadDefsPayload {
+        @NonNull
+        private final Resource json;
+
+        @Nullable
+        private final Resource gzipJson;
+
+        Prebuilt(@NonNull Resource json, @Nullable Resource gzipJson, @Nullable NadDefsSections sections) {
+            super(hash(json), sections);
+            this.json = json;
+            this.gzipJson = gzipJson;
+        }
+
+        private static long lengthOf(@NonNull Resource resource) {
+            try {
+                return resource.contentLength();
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+
+        @Override
+        @NonNull
+        ResponseEntity<Resource> toResponse(@Nullable String acceptEncoding) {
+            boolean useGzip = gzipJson != null && acceptsGzip(acceptEncoding);
+            Resource data = useGzip ? gzipJson : json;
+            return ok(MediaType.APPLICATION_JSON, lengthOf(data), useGzip).body(data);
+        }
+    }
+
+    /**
+     * A resource of a buffer, each reading starts from the beginning of the buffer without any copy of it.
+     */
+    private static class BufferResource extends AbstractResource {
+        @NonNull
+        private final ByteBuffer buffer;
+
+        BufferResource(@NonNull ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public long contentLength() {
+            return buffer.remaining();
+        }
+
+        @Override
+        @NonNull
+        public InputStream getInputStream() {
+            return newInputStream(buffer);
+        }
+
+        @Override
+        @NonNull
+        public String getDescription() {
+            return "Nad defs buffer [" + buffer.remaining() + " bytes]";
+        }
+    }
+
+    /**
+     * A HttpOutputMessage which writes to a memory buffer.
+     */
+    private static class BufferedOutputMessage implements HttpOutputMessage {
+        private final HttpHeaders headers = new HttpHeaders();
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+
+        @Override
+        @NonNull
+        public OutputStream getBody() {
+            return out;
+        }
+
+        @Override
+        @NonNull
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+}
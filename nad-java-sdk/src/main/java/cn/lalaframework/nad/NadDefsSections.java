@@ -0,0 +1,370 @@
+package cn.lalaframework.nad;
+
+import cn.lalaframework.nad.interfaces.NadDef;
+import cn.lalaframework.nad.interfaces.NadResult;
+import cn.lalaframework.nad.interfaces.NadRoute;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The offsets of the items of defs (modules, routes, classes and enums) in the serialized defs, which are recorded
+ * while the defs are written. A page of items or a projection of the defs is responded by slicing the same buffer
+ * which serves the defs, either in the heap or memory mapped, without any serialization or copy.
+ */
+final class NadDefsSections {
+    /**
+     * The media type of newline delimited JSON, each line of which is an item.
+     */
+    static final MediaType NDJSON = MediaType.valueOf("application/x-ndjson");
+
+    /**
+     * The header of the cursor of the next page, which is responded with NDJSON only if more items remain.
+     */
+    static final String NEXT_CURSOR = "Nad-Next-Cursor";
+
+    /**
+     * The names of sections, which are the fields of a NadResult in the order they are written.
+     */
+    static final List<String> FIELDS = Collections.unmodifiableList(Arrays.asList("modules", "routes", "classes", "enums"));
+
+    /**
+     * The version of the index format, see writeIndex.
+     */
+    private static final int INDEX_VERSION = 1;
+
+    private static final byte[] PAGE_START = "{\"items\":[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NEXT = "],\"next\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NO_NEXT = "],\"next\":null}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NEWLINE = {'\n'};
+
+    /**
+     * The serialized defs, which are shared with the payload of defs.
+     */
+    @NonNull
+    private final ByteBuffer data;
+
+    @NonNull
+    private final Map<String, Section> sections;
+
+    private NadDefsSections(@NonNull ByteBuffer data, @NonNull Map<String, Section> sections) {
+        this.data = data;
+        this.sections = sections;
+    }
+
+    /**
+     * Create the sections of the serialized defs.
+     *
+     * @param result The defs, whose lists are sorted.
+     * @param data   The serialized defs.
+     * @param starts The offset of the first item of each field in FIELDS order, which is after the opening bracket.
+     * @param ends   The end offsets of the items of each field in FIELDS order, the next item starts after the comma.
+     */
+    @NonNull
+    static NadDefsSections of(@NonNull NadResult result, @NonNull ByteBuffer data, @NonNull int[] starts,
+                              @NonNull int[][] ends) {
+        Map<String, Section> sections = new LinkedHashMap<>();
+        sections.put("modules", new Section(keys(result.getModules(), NadDef::getName), starts[0], ends[0]));
+        sections.put("routes", new Section(keys(result.getRoutes(), NadRoute::getSortKey), starts[1], ends[1]));
+        sections.put("classes", new Section(keys(result.getClasses(), NadDef::getName), starts[2], ends[2]));
+        sections.put("enums", new Section(keys(result.getEnums(), NadDef::getName), starts[3], ends[3]));
+        return new NadDefsSections(data.asReadOnlyBuffer(), Collections.unmodifiableMap(sections));
+    }
+
+    @NonNull
+    private static <T> String[] keys(@NonNull List<T> items, @NonNull Function<T, String> getKey) {
+        String[] keys = new String[items.size()];
+        for (int i = 0; i < keys.length; i++) keys[i] = getKey.apply(items.get(i));
+        return keys;
+    }
+
+    /**
+     * Write the index of the sections, which is saved along with the serialized defs as a part of a snapshot,
+     * so that the mapped snapshot is paged and projected without any collection.
+     */
+    void writeIndex(@NonNull OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(INDEX_VERSION);
+        for (String field : FIELDS) {
+            Section section = sections.get(field);
+            data.writeInt(section.keys.length);
+            data.writeInt(section.start);
+            for (int i = 0; i < section.keys.length; i++) {
+                data.writeInt(section.ends[i]);
+                data.writeUTF(section.keys[i]);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Read the index of the sections of the serialized defs, see writeIndex.
+     *
+     * @param in   The index.
+     * @param data The serialized defs, such as a memory mapped file.
+     * @throws IOException If the index is malformed, or it does not fit the serialized defs.
+     */
+    @NonNull
+    static NadDefsSections readIndex(@NonNull InputStream in, @NonNull ByteBuffer data) throws IOException {
+        DataInputStream index = new DataInputStream(in);
+        if (index.readInt() != INDEX_VERSION) throw new IOException("Unknown version of the index of Nad defs");
+        Map<String, Section> sections = new LinkedHashMap<>();
+        for (String field : FIELDS) {
+            int count = index.readInt();
+            int start = index.readInt();
+            if (count < 0 || start < 0 || start > data.limit()) throw new IOException("Malformed index of " + field);
+            String[] keys = new String[count];
+            int[] ends = new int[count];
+            int from = start;
+            for (int i = 0; i < count; i++) {
+                ends[i] = index.readInt();
+                if (ends[i] < from || ends[i] > data.limit()) throw new IOException("Malformed index of " + field);
+                from = ends[i] + 1;
+                keys[i] = index.readUTF();
+            }
+            sections.put(field, new Section(keys, start, ends));
+        }
+        return new NadDefsSections(data.asReadOnlyBuffer(), Collections.unmodifiableMap(sections));
+    }
+
+    /**
+     * Normalize the requested fields, such as `routes,enums`, into the order of FIELDS without duplicates.
+     *
+     * @throws IllegalArgumentException If a field is not one of FIELDS.
+     */
+    @NonNull
+    static List<String> normalizeFields(@NonNull Collection<String> fields) {
+        Set<String> requested = new HashSet<>();
+        for (String field : fields) {
+            String name = field.trim();
+            if (!FIELDS.contains(name)) throw new IllegalArgumentException("Unknown field: " + name);
+            requested.add(name);
+        }
+        List<String> res = new ArrayList<>(requested.size());
+        for (String field : FIELDS) if (requested.contains(field)) res.add(field);
+        return res;
+    }
+
+    /**
+     * Get a slice of the serialized defs, which shares the content of them.
+     */
+    @NonNull
+    private ByteBuffer slice(int start, int end) {
+        ByteBuffer res = data.duplicate();
+        // Buffer is used so that the calls are linked to the methods of Java 8.
+        ((Buffer) res).limit(end);
+        ((Buffer) res).position(start);
+        return res.slice();
+    }
+
+    /**
+     * Create a projection of the defs, which is a NadResult with only the given fields, by slicing the lists of the
+     * serialized defs as they are. The projection is a payload with its own entity tag and gzip encoded body, which
+     * are prepared at once, so it should be created by a worker and cached.
+     *
+     * @param fields The normalized fields, see normalizeFields.
+     */
+    @NonNull
+    NadDefsPayload project(@NonNull List<String> fields) {
+        List<ByteBuffer> pieces = new ArrayList<>();
+        long length = 0;
+        for (int i = 0; i < fields.size(); i++) {
+            Section section = sections.get(fields.get(i));
+            byte[] start = ((i == 0 ? "{\"" : ",\"") + fields.get(i) + "\":[").getBytes(StandardCharsets.UTF_8);
+            // The items of a list are contiguous and already separated by commas.
+            ByteBuffer items = slice(section.start, section.size() == 0 ? section.start : section.ends[section.size() - 1]);
+            pieces.add(ByteBuffer.wrap(start));
+            pieces.add(items);
+            pieces.add(ByteBuffer.wrap(new byte[]{']'}));
+            length += start.length + items.remaining() + 1;
+        }
+        pieces.add(ByteBuffer.wrap(fields.isEmpty() ? new byte[]{'{', '}'} : new byte[]{'}'}));
+        length += fields.isEmpty() ? 2 : 1;
+        return NadDefsPayload.fromSlices(new SlicesResource(pieces, length));
+    }
+
+    /**
+     * Encode the key of an item as an opaque cursor, which is URL safe.
+     */
+    @NonNull
+    static String encodeCursor(@NonNull String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor into the key of an item.
+     *
+     * @throws IllegalArgumentException If the cursor is not encoded by encodeCursor.
+     */
+    @NonNull
+    static String decodeCursor(@NonNull String cursor) {
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Respond a page of items of a section, by slicing the serialized defs.
+     * A JSON page is `{"items":[...],"next":"cursor"}` whose next is null if no item remains, and a NDJSON page
+     * has one item per line and the cursor in the Nad-Next-Cursor header.
+     *
+     * @param name   The name of section, such as "routes".
+     * @param after  The key of the last item of the previous page, or null for the first page.
+     * @param limit  The maximum count of items in the page.
+     * @param ndjson Whether to respond NDJSON.
+     */
+    @NonNull
+    ResponseEntity<Resource> page(@NonNull String name, @Nullable String after, int limit, boolean ndjson) {
+        Section section = sections.get(name);
+        if (section == null) return ResponseEntity.notFound().build();
+        int from = Math.min(section.indexAfter(after), section.size());
+        int to = (int) Math.min((long) from + limit, section.size());
+        String next = to < section.size() && to > from ? encodeCursor(section.keys[to - 1]) : null;
+        List<ByteBuffer> pieces = new ArrayList<>();
+        long length = 0;
+        if (ndjson) {
+            for (int i = from; i < to; i++) {
+                ByteBuffer item = slice(section.startOf(i), section.ends[i]);
+                length += item.remaining() + NEWLINE.length;
+                pieces.add(item);
+                pieces.add(ByteBuffer.wrap(NEWLINE));
+            }
+        } else {
+            pieces.add(ByteBuffer.wrap(PAGE_START));
+            length += PAGE_START.length;
+            if (to > from) {
+                // The items of a page are contiguous and already separated by commas.
+                ByteBuffer items = slice(section.startOf(from), section.ends[to - 1]);
+                length += items.remaining();
+                pieces.add(items);
+            }
+            if (next == null) {
+                pieces.add(ByteBuffer.wrap(NO_NEXT));
+                length += NO_NEXT.length;
+            } else {
+                // The cursor is URL safe Base64, so it needs no escaping in JSON.
+                byte[] tail = ("\"" + next + "\"}").getBytes(StandardCharsets.UTF_8);
+                pieces.add(ByteBuffer.wrap(NEXT));
+                pieces.add(ByteBuffer.wrap(tail));
+                length += NEXT.length + tail.length;
+            }
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(ndjson ? NDJSON : MediaType.APPLICATION_JSON)
+                .contentLength(length)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        if (ndjson && next != null) builder.header(NEXT_CURSOR, next);
+        return builder.body(new SlicesResource(pieces, length));
+    }
+
+    /**
+     * A sorted list of items, which are serialized one after another and separated by commas.
+     */
+    private static final class Section {
+        /**
+         * The sort keys of items in ascending order, which are unique.
+         */
+        @NonNull
+        private final String[] keys;
+
+        /**
+         * The offset of the first item, which is after the opening bracket of the list.
+         */
+        private final int start;
+
+        /**
+         * The end offset of each item, the next item starts after the comma.
+         */
+        @NonNull
+        private final int[] ends;
+
+        Section(@NonNull String[] keys, int start, @NonNull int[] ends) {
+            if (keys.length != ends.length) throw new IllegalArgumentException("The offsets do not match the items");
+            this.keys = keys;
+            this.start = start;
+            this.ends = ends;
+        }
+
+        int size() {
+            return keys.length;
+        }
+
+        /**
+         * Get the index of the first item after a key, so that a cursor still works after the defs are refreshed,
+         * even if the item of the cursor is removed.
+         *
+         * @param key The key of the last item of the previous page, or null for the first page.
+         */
+        int indexAfter(@Nullable String key) {
+            if (key == null) return 0;
+            int i = Arrays.binarySearch(keys, key);
+            return i >= 0 ? i + 1 : -i - 1;
+        }
+
+        int startOf(int index) {
+            return index == 0 ? start : ends[index - 1] + 1;
+        }
+    }
+
+    /**
+     * A resource of slices of buffers, which are read one after another without any copy of them.
+     */
+    private static class SlicesResource extends AbstractResource {
+        @NonNull
+        private final List<ByteBuffer> pieces;
+
+        private final long length;
+
+        SlicesResource(@NonNull List<ByteBuffer> pieces, long length) {
+            this.pieces = pieces;
+            this.length = length;
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public long contentLength() {
+            return length;
+        }
+
+        @Override
+        @NonNull
+        public InputStream getInputStream() {
+            List<InputStream> streams = new ArrayList<>(pieces.size());
+            for (ByteBuffer piece : pieces) streams.add(NadDefsPayload.newInputStream(piece));
+            return new SequenceInputStream(Collections.enumeration(streams));
+        }
+
+        @Override
+        @NonNull
+        public String getDescription() {
+            return "Nad defs slices [" + length + " bytes]";
+        }
+    }
+}
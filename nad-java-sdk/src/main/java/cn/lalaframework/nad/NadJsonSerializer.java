@@ -0,0 +1,107 @@
+package cn.lalaframework.nad;
+
+import cn.lalaframework.nad.interfaces.NadResult;
+import cn.lalaframework.nad.models.NadJsonWriter;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Serialize the defs with NadJsonWriter.
+ * NOTE: Jackson is optional for the host application, so this class is used only if NadDefsPayload.JACKSON_PRESENT.
+ */
+final class NadJsonSerializer {
+    private NadJsonSerializer() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Serialize an object as JSON.
+     * The generator is created by the ObjectMapper of the host application if its first JSON converter is a Jackson one,
+     * so that the application values (such as the values of enum constants) are written as the application writes them.
+     * Only the codec is used, the features of the ObjectMapper (such as INDENT_OUTPUT) are ignored.
+     *
+     * @param parallelism How many threads write a NadResult, see NadJsonWriter.writeParallel.
+     */
+    @NonNull
+    static byte[] serialize(@NonNull Object value, @NonNull List<HttpMessageConverter<?>> converters,
+                            int parallelism) throws IOException {
+        JsonFactory factory = getFactory(converters);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        if (value instanceof NadResult) {
+            NadJsonWriter.writeParallel((NadResult) value, factory, out, null, parallelism);
+            return out.toByteArray();
+        }
+        try (JsonGenerator generator = factory.createGenerator(out, JsonEncoding.UTF8)) {
+            NadJsonWriter.of(generator).write(value);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Serialize a NadResult as JSON, the offsets of its items are recorded while they are written.
+     *
+     * @param result      The defs to be serialized.
+     * @param converters  The message converters of the host application.
+     * @param parallelism How many threads write the defs, see NadJsonWriter.writeParallel.
+     * @param starts      The offset of the first item of each list in NadDefsSections.FIELDS order.
+     * @param ends        The end offsets of the items of each list in NadDefsSections.FIELDS order.
+     */
+    @NonNull
+    static byte[] serialize(@NonNull NadResult result, @NonNull List<HttpMessageConverter<?>> converters,
+                            int parallelism, @NonNull int[] starts, @NonNull int[][] ends) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        Map<String, NadJsonWriter.ItemOffsets> offsets =
+                NadJsonWriter.writeParallel(result, getFactory(converters), out, null, parallelism);
+        for (int i = 0; i < NadDefsSections.FIELDS.size(); i++) {
+            NadJsonWriter.ItemOffsets items = offsets.get(NadDefsSections.FIELDS.get(i));
+            starts[i] = Math.toIntExact(items.startOf(0));
+            ends[i] = new int[items.size()];
+            for (int j = 0; j < ends[i].length; j++) ends[i][j] = Math.toIntExact(items.endOf(j));
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Get the mapper of application values by the ObjectMapper of the host application, which converts a value into
+     * the plain data (maps, lists, strings, numbers and booleans) as the application writes it, see NadDetachedResult.
+     *
+     * @return The mapper, or null if the first JSON converter is not a Jackson one.
+     */
+    @Nullable
+    static Function<Object, Object> valueMapper(@NonNull List<HttpMessageConverter<?>> converters) {
+        for (HttpMessageConverter<?> converter : converters) {
+            if (!converter.canWrite(Map.class, MediaType.APPLICATION_JSON)) continue;
+            if (converter instanceof AbstractJackson2HttpMessageConverter) {
+                ObjectMapper mapper = ((AbstractJackson2HttpMessageConverter) converter).getObjectMapper();
+                return value -> mapper.convertValue(value, Object.class);
+            }
+            break;
+        }
+        return null;
+    }
+
+    @NonNull
+    private static JsonFactory getFactory(@NonNull List<HttpMessageConverter<?>> converters) {
+        for (HttpMessageConverter<?> converter : converters) {
+            if (!converter.canWrite(Map.class, MediaType.APPLICATION_JSON)) continue;
+            if (converter instanceof AbstractJackson2HttpMessageConverter) {
+                return ((AbstractJackson2HttpMessageConverter) converter).getObjectMapper().getFactory();
+            }
+            break;
+        }
+        return new JsonFactory();
+    }
+}
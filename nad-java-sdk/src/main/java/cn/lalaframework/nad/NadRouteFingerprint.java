@@ -0,0 +1,81 @@
+package cn.lalaframework.nad;
+
+import org.springframework.lang.NonNull;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A cheap fingerprint of the routes of each module (controller class), which tells the changed modules
+ * without collecting the defs again.
+ */
+final class NadRouteFingerprint {
+    /**
+     * An order-independent hash of the routes of each module.
+     */
+    @NonNull
+    private final Map<String, Long> modules;
+
+    private NadRouteFingerprint(@NonNull Map<String, Long> modules) {
+        this.modules = modules;
+    }
+
+    /**
+     * Take a fingerprint of the handler methods, it only costs time proportional to the number of routes.
+     */
+    @NonNull
+    static NadRouteFingerprint of(@NonNull RequestMappingHandlerMapping mapping) {
+        Map<String, Long> modules = new HashMap<>();
+        for (Map.Entry<RequestMappingInfo, HandlerMethod> entry : mapping.getHandlerMethods().entrySet()) {
+            HandlerMethod handler = entry.getValue();
+            long hash = mix(31L * entry.getKey().hashCode() + handler.hashCode());
+            modules.merge(handler.getBeanType().getTypeName(), hash, Long::sum);
+        }
+        return new NadRouteFingerprint(modules);
+    }
+
+    /**
+     * Describe the routes in a stable way, which is the same across boots of the same application (unlike the hashes of
+     * a fingerprint), so that it can be a part of the snapshot key. The descriptions are sorted.
+     */
+    @NonNull
+    static List<String> describe(@NonNull RequestMappingHandlerMapping mapping) {
+        List<String> res = new ArrayList<>();
+        mapping.getHandlerMethods().forEach((info, handler) ->
+                res.add(info + " " + handler.getBeanType().getTypeName() + " " + handler.getMethod().toGenericString()));
+        Collections.sort(res);
+        return res;
+    }
+
+    /**
+     * Spread the bits of a hash, so that the sum of hashes hardly collides (the finalizer of SplitMix64).
+     */
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+
+    /**
+     * Get the names of modules which are added, removed, or whose routes are changed since another fingerprint.
+     */
+    @NonNull
+    Set<String> diff(@NonNull NadRouteFingerprint previous) {
+        Set<String> res = new TreeSet<>();
+        modules.forEach((name, hash) -> {
+            if (!hash.equals(previous.modules.get(name))) res.add(name);
+        });
+        previous.modules.keySet().forEach(name -> {
+            if (!modules.containsKey(name)) res.add(name);
+        });
+        return res;
+    }
+}
@@ -0,0 +1,237 @@
+package cn.lalaframework.nad;
+
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * The serialized defs saved on the local disk, which are served by the next boot of the same application
+ * without any collection. A snapshot is keyed by a fingerprint of the classpath, the routes, the excluder rules, the
+ * serializer and the message converters, so neither a changed artifact nor the routes which depend on the properties
+ * or profiles load a stale snapshot.
+ */
+final class NadSnapshot {
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+    @NonNull
+    private final Path json;
+
+    @NonNull
+    private final Path gzipJson;
+
+    /**
+     * The index of sections, see NadDefsSections.writeIndex.
+     */
+    @NonNull
+    private final Path index;
+
+    /**
+     * @param dir The directory of snapshots, several applications can share it because the file names are keyed.
+     * @param key The fingerprint of the application.
+     */
+    NadSnapshot(@NonNull Path dir, @NonNull String key) {
+        json = dir.resolve("defs-" + key + ".json");
+        gzipJson = dir.resolve("defs-" + key + ".json.gz");
+        index = dir.resolve("defs-" + key + ".index");
+    }
+
+    /**
+     * Get the default directory of snapshots in a shared directory (such as java.io.tmpdir), which is private to the
+     * user of this process, so another user can never plant a snapshot there. On a POSIX file system, it is created
+     * with the permissions rwx------, and an existing one is used only if it is still so and owned by the user.
+     *
+     * @param parent The shared directory.
+     * @throws IOException If the directory cannot be created, or it is not private.
+     */
+    @NonNull
+    static Path privateDir(@NonNull Path parent) throws IOException {
+        String user = System.getProperty("user.name", "").replaceAll("[^A-Za-z0-9._-]", "_");
+        Path dir = parent.resolve("nad-" + user);
+        if (!isPosix(dir)) return Files.createDirectories(dir);
+        try {
+            Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+        } catch (FileAlreadyExistsException ignored) {
+            // An existing one is verified below.
+        }
+        PosixFileAttributes attributes = Files.readAttributes(dir, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (!attributes.isDirectory() || !attributes.owner().equals(currentUser(dir))
+                || !attributes.permissions().equals(OWNER_ONLY)) {
+            throw new IOException("The directory of snapshots is not private to the user: " + dir);
+        }
+        return dir;
+    }
+
+    private static boolean isPosix(@NonNull Path path) {
+        return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    @NonNull
+    private static UserPrincipal currentUser(@NonNull Path path) throws IOException {
+        return path.getFileSystem().getUserPrincipalLookupService().lookupPrincipalByName(System.getProperty("user.name"));
+    }
+
+    /**
+     * Compute the fingerprint of an application, a file is identified by its path, size and modified time,
+     * so the content of a large jar is never read.
+     *
+     * @param classPath   The classpath of the JVM.
+     * @param classes     Other classes whose code sources are a part of the application, such as the controllers,
+     *                    since the classpath of a web container does not hold the application.
+     * @param routes      The descriptions of routes, see NadRouteFingerprint.describe.
+     * @param rules       The rules of ClassExcluder.
+     * @param serializer  The serializer of JSON, which decides the format of the snapshot.
+     * @param converters  The message converters, which decide the format of the snapshot.
+     */
+    @NonNull
+    static String fingerprint(@NonNull String classPath, @NonNull Collection<Class<?>> classes,
+                              @NonNull List<String> routes, @NonNull List<String> rules, @NonNull String serializer,
+                              @NonNull List<HttpMessageConverter<?>> converters) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        Set<Path> locations = new LinkedHashSet<>();
+        for (String item : classPath.split(File.pathSeparator)) {
+            if (!item.isEmpty()) locations.add(Paths.get(item).toAbsolutePath());
+        }
+        for (Class<?> clz : classes) {
+            Path location = getLocation(clz);
+            if (location != null) locations.add(location);
+        }
+        for (Path location : locations) update(digest, location);
+        for (String route : routes) update(digest, "route", route);
+        for (String rule : rules) update(digest, "rule", rule);
+        update(digest, "serializer", serializer);
+        for (HttpMessageConverter<?> converter : converters) update(digest, "converter", converter.getClass().getName());
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+
+    @Nullable
+    private static Path getLocation(@NonNull Class<?> clz) {
+        CodeSource source = clz.getProtectionDomain().getCodeSource();
+        URL url = source == null ? null : source.getLocation();
+        if (url == null || !"file".equals(url.getProtocol())) return null;
+        try {
+            return Paths.get(url.toURI()).toAbsolutePath();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void update(@NonNull MessageDigest digest, @NonNull Path location) throws IOException {
+        if (!Files.isDirectory(location)) {
+            update(digest, location.toString(), location);
+            return;
+        }
+        try (Stream<Path> files = Files.walk(location)) {
+            Iterator<Path> it = files.filter(Files::isRegularFile).sorted().iterator();
+            while (it.hasNext()) {
+                Path file = it.next();
+                update(digest, location.relativize(file).toString(), file);
+            }
+        }
+    }
+
+    private static void update(@NonNull MessageDigest digest, @NonNull String name, @NonNull Path file) throws IOException {
+        if (!Files.exists(file)) {
+            update(digest, "missing", name);
+            return;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        update(digest, "file", name, String.valueOf(attributes.size()),
+                String.valueOf(attributes.lastModifiedTime().toMillis()));
+    }
+
+    private static void update(@NonNull MessageDigest digest, @NonNull String... values) {
+        for (String value : values) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+            // A separator which never appears in a value, so that ["ab", "c"] and ["a", "bc"] are different.
+            digest.update((byte) 0);
+        }
+    }
+
+    /**
+     * Load the snapshot by memory mapping, so it is never copied into the heap.
+     * The pages and projections are sliced from the mapped defs by the index of sections if it is saved.
+     *
+     * @return The payload, or null if the snapshot does not exist.
+     * @throws IOException If a file of the snapshot is not owned by the user of this process (on a POSIX file system),
+     *                     since it may be planted by another user.
+     */
+    @Nullable
+    NadDefsPayload load() throws IOException {
+        if (!Files.isRegularFile(json, LinkOption.NOFOLLOW_LINKS)) return null;
+        List<Path> files = new ArrayList<>();
+        files.add(json);
+        boolean hasGzip = Files.isRegularFile(gzipJson, LinkOption.NOFOLLOW_LINKS);
+        if (hasGzip) files.add(gzipJson);
+        boolean hasIndex = Files.isRegularFile(index, LinkOption.NOFOLLOW_LINKS);
+        if (hasIndex) files.add(index);
+        if (isPosix(json)) {
+            UserPrincipal user = currentUser(json);
+            for (Path file : files) {
+                if (!Files.getOwner(file, LinkOption.NOFOLLOW_LINKS).equals(user)) {
+                    throw new IOException("The snapshot is not owned by the user: " + file);
+                }
+            }
+        }
+        return NadDefsPayload.fromFile(json, hasGzip ? gzipJson : null, hasIndex ? index : null);
+    }
+
+    /**
+     * Save the snapshot, each file is written to a temporary file first and then moved,
+     * so another JVM never loads a partial snapshot.
+     * NOTE: The json file is moved at last, since it marks a complete snapshot.
+     *
+     * @param sections The offsets of items in the body, or null if they are unknown.
+     */
+    void save(@NonNull byte[] body, @NonNull byte[] gzipBody, @Nullable NadDefsSections sections) throws IOException {
+        Files.createDirectories(json.getParent());
+        if (sections == null) {
+            // A stale index never describes another body.
+            Files.deleteIfExists(index);
+        } else {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            sections.writeIndex(out);
+            write(index, out.toByteArray());
+        }
+        write(gzipJson, gzipBody);
+        write(json, body);
+    }
+
+    private static void write(@NonNull Path file, @NonNull byte[] data) throws IOException {
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, data);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package cn.lalaframework.nad;
+
+import org.springframework.lang.NonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The bounded pool of daemon threads which collect and serialize the defs, it is created once per controller.
+ * The work is single-flight, so a few threads are enough, and they are released once the pool is idle.
+ */
+final class NadWorkers {
+    /**
+     * The maximum count of threads, such as a collection and the fingerprint of a snapshot at the same time.
+     */
+    static final int THREADS = 2;
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    @NonNull
+    private final ThreadPoolExecutor pool;
+
+    NadWorkers() {
+        AtomicInteger count = new AtomicInteger();
+        pool = new ThreadPoolExecutor(THREADS, THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, "nad-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Get an executor of the pool, whose tasks run with the given priority, such as Thread.MIN_PRIORITY for the
+     * warm-up, so that it never competes with the requests of the host application.
+     * The priority of a worker is restored after each task, since the workers are shared.
+     */
+    @NonNull
+    Executor withPriority(int priority) {
+        return task -> pool.execute(() -> {
+            Thread current = Thread.currentThread();
+            int previous = current.getPriority();
+            current.setPriority(priority);
+            try {
+                task.run();
+            } finally {
+                current.setPriority(previous);
+            }
+        });
+    }
+
+    /**
+     * Stop the workers once the queued tasks are done, so that no waiting request hangs, and no new task is accepted.
+     */
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    boolean isShutdown() {
+        return pool.isShutdown();
+    }
+}
@@ -0,0 +1,7 @@
+package cn.lalaframework.nad.exceptions;
+
+public class NoMessageConverterException extends RuntimeException {
+    public NoMessageConverterException() {
+        super("No HttpMessageConverter can write the defs as JSON");
+    }
+}
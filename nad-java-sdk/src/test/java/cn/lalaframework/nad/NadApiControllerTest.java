@@ -1,17 +1,58 @@
 package cn.lalaframework.nad;
 
+import cn.lalaframework.nad.controllers.DynamicController;
+import cn.lalaframework.nad.controllers.MyController;
 import cn.lalaframework.nad.exceptions.NoHandlerMappingException;
+import cn.lalaframework.nad.exceptions.NoMessageConverterException;
+import cn.lalaframework.nad.interfaces.NadClass;
+import cn.lalaframework.nad.interfaces.NadEnum;
 import cn.lalaframework.nad.interfaces.NadResult;
+import cn.lalaframework.nad.models.NadDependencyGraph;
+import cn.lalaframework.nad.models.NadDetachedResult;
+import cn.lalaframework.nad.models.Role;
+import cn.lalaframework.nad.models.User;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
 
-import static org.junit.jupiter.api.Assertions.assertSame;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest(classes = TestApplication.class)
 class NadApiControllerTest {
@@ -21,9 +62,22 @@ class NadApiControllerTest {
     @Autowired
     private NadApiController nadApiController;
 
+    @Autowired
+    private RequestMappingHandlerMapping rhMapping;
+
+    /**
+     * The defs are responded asynchronously, so the result is taken by an async dispatch.
+     */
+    private ResultActions perform(RequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request)
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result));
+    }
+
     @Test
     void defs() throws Exception {
-        mockMvc.perform(
+        perform(
                         MockMvcRequestBuilders
                                 .get("/nad/api/defs")
                                 .contentType(MediaType.APPLICATION_JSON)
@@ -33,17 +87,435 @@ class NadApiControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("@.classes").isArray());
     }
 
+    @Test
+    void subset() throws Exception {
+        String my = MyController.class.getTypeName();
+        perform(MockMvcRequestBuilders.get("/nad/api/defs").param("modules", my + ",not.Exists"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("@.modules.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("@.modules[0].name").value(my))
+                .andExpect(MockMvcResultMatchers.jsonPath("@.routes.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("@.routes[*].bean").value(Matchers.everyItem(Matchers.is(my))))
+                .andExpect(MockMvcResultMatchers.jsonPath("@.classes[*].name").value(Matchers.hasItem(User.class.getTypeName())))
+                .andExpect(MockMvcResultMatchers.jsonPath("@.enums[*].name").value(Matchers.hasItem(Role.class.getTypeName())));
+
+        perform(MockMvcRequestBuilders.get("/nad/api/defs").param("modules", "not.Exists"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("@.modules").isEmpty())
+                .andExpect(MockMvcResultMatchers.jsonPath("@.routes").isEmpty())
+                .andExpect(MockMvcResultMatchers.jsonPath("@.classes").isEmpty());
+    }
+
+    private static byte[] gunzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void gzip() throws Exception {
+        MvcResult plain = perform(MockMvcRequestBuilders.get("/nad/api/defs"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andReturn();
+        byte[] body = plain.getResponse().getContentAsByteArray();
+        assertEquals(body.length, plain.getResponse().getContentLength());
+
+        MvcResult gzip = perform(MockMvcRequestBuilders.get("/nad/api/defs")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate, br"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn();
+        byte[] compressed = gzip.getResponse().getContentAsByteArray();
+        assertEquals(compressed.length, gzip.getResponse().getContentLength());
+        assertArrayEquals(body, gunzip(compressed));
+    }
+
+    @Test
+    void etag() throws Exception {
+        String etag = perform(MockMvcRequestBuilders.get("/nad/api/defs"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        assertTrue(etag.matches("\"[0-9a-f]{64}\""));
+        String gzipETag = perform(MockMvcRequestBuilders.get("/nad/api/defs").header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(gzipETag);
+        assertNotEquals(etag, gzipETag);
+
+        // The client which has the defs is answered without the body.
+        perform(MockMvcRequestBuilders.get("/nad/api/defs").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(MockMvcResultMatchers.status().isNotModified())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, etag))
+                .andExpect(MockMvcResultMatchers.content().bytes(new byte[0]));
+        perform(MockMvcRequestBuilders.get("/nad/api/defs")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"other\", " + gzipETag))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+        // The tag of a representation never matches another one.
+        perform(MockMvcRequestBuilders.get("/nad/api/defs").header(HttpHeaders.IF_NONE_MATCH, gzipETag))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, etag));
+    }
+
+    @Test
+    void compact() throws Exception {
+        String user = User.class.getTypeName();
+        MvcResult byParam = perform(MockMvcRequestBuilders.get("/nad/api/defs").param("format", "compact"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("@.format").value("compact"))
+                .andExpect(MockMvcResultMatchers.jsonPath("@.strings").value(Matchers.hasItem(user)))
+                .andExpect(MockMvcResultMatchers.jsonPath("@.classes[*].name").value(Matchers.everyItem(Matchers.isA(Integer.class))))
+                .andReturn();
+        MvcResult byAccept = perform(MockMvcRequestBuilders.get("/nad/api/defs")
+                        .header(HttpHeaders.ACCEPT, NadApiController.COMPACT_MEDIA_TYPE + ", application/json;q=0.5"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn();
+        assertArrayEquals(byParam.getResponse().getContentAsByteArray(), byAccept.getResponse().getContentAsByteArray());
+        assertNotEquals(byParam.getResponse().getHeader(HttpHeaders.ETAG),
+                perform(MockMvcRequestBuilders.get("/nad/api/defs")).andReturn().getResponse().getHeader(HttpHeaders.ETAG));
+
+        perform(MockMvcRequestBuilders.get("/nad/api/defs").param("format", "compact").param("modules", MyController.class.getTypeName()))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("@.modules.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("@.strings").value(Matchers.hasItem(user)));
+        // The full defs are responded by default.
+        perform(MockMvcRequestBuilders.get("/nad/api/defs").header(HttpHeaders.ACCEPT, "*/*"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("@.format").doesNotExist());
+    }
+
+    @Test
+    void isCompact() {
+        assertTrue(NadDefsEncoder.isCompact("compact", null));
+        assertFalse(NadDefsEncoder.isCompact("full", NadApiController.COMPACT_MEDIA_TYPE));
+        assertTrue(NadDefsEncoder.isCompact(null, "application/json, " + NadApiController.COMPACT_MEDIA_TYPE));
+        assertFalse(NadDefsEncoder.isCompact(null, NadApiController.COMPACT_MEDIA_TYPE + ";q=0"));
+        assertFalse(NadDefsEncoder.isCompact(null, "application/*"));
+        assertFalse(NadDefsEncoder.isCompact(null, "not a media type"));
+    }
+
+    @Test
+    void cbor() throws Exception {
+        byte[] json = perform(MockMvcRequestBuilders.get("/nad/api/defs")).andReturn().getResponse().getContentAsByteArray();
+        MvcResult cbor = perform(MockMvcRequestBuilders.get("/nad/api/defs").header(HttpHeaders.ACCEPT, "application/cbor"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+        byte[] body = cbor.getResponse().getContentAsByteArray();
+        assertTrue(body.length < json.length);
+        // The CBOR document has the same data model as the JSON one.
+        assertEquals(new ObjectMapper().readTree(json), new CBORMapper().readTree(body));
+        // The encoded defs are cached.
+        assertSame(nadApiController.getCache().encodedPayload(false, MediaType.APPLICATION_CBOR).join(),
+                nadApiController.getCache().encodedPayload(false, MediaType.APPLICATION_CBOR).join());
+        // The encoded defs are compressed by the worker, so no request compresses them.
+        assertNotNull(ReflectionTestUtils.getField(
+                nadApiController.getCache().encodedPayload(false, MediaType.APPLICATION_CBOR).join(), "gzipBody"));
+
+        MvcResult compact = perform(MockMvcRequestBuilders.get("/nad/api/defs").param("format", "compact")
+                .header(HttpHeaders.ACCEPT, "application/cbor"))
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+        assertEquals("compact", new CBORMapper().readTree(compact.getResponse().getContentAsByteArray()).get("format").asText());
+    }
+
+    @Test
+    void selectMediaType() {
+        assertEquals(MediaType.APPLICATION_JSON, nadApiController.getCache().getEncoder().selectMediaType(null));
+        assertEquals(MediaType.APPLICATION_JSON, nadApiController.getCache().getEncoder().selectMediaType("*/*"));
+        assertEquals(MediaType.APPLICATION_JSON, nadApiController.getCache().getEncoder().selectMediaType("application/json, application/cbor"));
+        assertEquals(MediaType.APPLICATION_CBOR, nadApiController.getCache().getEncoder().selectMediaType("application/json;q=0.5, application/cbor"));
+        assertEquals(MediaType.APPLICATION_CBOR, nadApiController.getCache().getEncoder().selectMediaType("text/html, application/cbor, */*"));
+        assertEquals(MediaType.APPLICATION_JSON, nadApiController.getCache().getEncoder().selectMediaType("application/cbor;q=0"));
+        // There is no converter of Smile in the test application.
+        assertEquals(MediaType.APPLICATION_JSON, nadApiController.getCache().getEncoder().selectMediaType("application/x-jackson-smile"));
+        assertEquals(MediaType.APPLICATION_JSON, nadApiController.getCache().getEncoder().selectMediaType("not a media type"));
+    }
+
+    @Test
+    void pages() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode defs = mapper.readTree(perform(MockMvcRequestBuilders.get("/nad/api/defs")).andReturn().getResponse().getContentAsByteArray());
+        List<JsonNode> routes = new ArrayList<>();
+        String cursor = null;
+        do {
+            MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get("/nad/api/routes").param("limit", "1");
+            if (cursor != null) request.param("cursor", cursor);
+            MvcResult page = perform(request)
+                    .andExpect(MockMvcResultMatchers.status().isOk())
+                    .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(MockMvcResultMatchers.jsonPath("@.items.length()").value(Matchers.lessThanOrEqualTo(1)))
+                    .andReturn();
+            JsonNode body = mapper.readTree(page.getResponse().getContentAsByteArray());
+            body.get("items").forEach(routes::add);
+            cursor = body.get("next").isNull() ? null : body.get("next").asText();
+        } while (cursor != null);
+        // The pages are exactly the routes of the defs.
+        assertTrue(routes.size() > 1);
+        assertEquals(mapper.createArrayNode().addAll(routes), defs.get("routes"));
+
+        perform(MockMvcRequestBuilders.get("/nad/api/classes"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("@.items.length()").value(defs.get("classes").size()))
+                .andExpect(MockMvcResultMatchers.jsonPath("@.next").value(Matchers.nullValue()));
+        // A cursor after the last item is an empty page.
+        perform(MockMvcRequestBuilders.get("/nad/api/enums").param("cursor", NadDefsSections.encodeCursor("\uffff")))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("@.items").isEmpty());
+        perform(MockMvcRequestBuilders.get("/nad/api/routes").param("cursor", "not base64!"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+        perform(MockMvcRequestBuilders.get("/nad/api/routes").param("limit", "0"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    void projection() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode defs = mapper.readTree(perform(MockMvcRequestBuilders.get("/nad/api/defs")).andReturn().getResponse().getContentAsByteArray());
+        MvcResult routes = perform(MockMvcRequestBuilders.get("/nad/api/defs").param("fields", "enums,routes"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().exists(HttpHeaders.ETAG))
+                .andReturn();
+        JsonNode projected = mapper.readTree(routes.getResponse().getContentAsByteArray());
+        List<String> names = new ArrayList<>();
+        projected.fieldNames().forEachRemaining(names::add);
+        // The fields are in the same order as those of the defs.
+        assertEquals(Arrays.asList("routes", "enums"), names);
+        assertEquals(defs.get("routes"), projected.get("routes"));
+        assertEquals(defs.get("enums"), projected.get("enums"));
+        // The projection is sliced from the same buffer as the defs, and it is cached with its tag and gzip body.
+        NadDefsSections sections = nadApiController.getCache().sections(true).join();
+        assertSame(sections, ((NadDefsPayload) nadApiController.getCache().payload(Thread.NORM_PRIORITY).join()).getSections());
+        NadDefsPayload payload = nadApiController.getCache().projection(true, Arrays.asList("routes", "enums")).join();
+        assertSame(payload, nadApiController.getCache().projection(true, Arrays.asList("routes", "enums")).join());
+        assertEquals(routes.getResponse().getHeader(HttpHeaders.ETAG), payload.getETag(false));
+        MvcResult gzip = perform(MockMvcRequestBuilders.get("/nad/api/defs").param("fields", "enums,routes")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, payload.getETag(true)))
+                .andReturn();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip.getResponse().getContentAsByteArray()))) {
+            assertArrayEquals(routes.getResponse().getContentAsByteArray(), StreamUtils.copyToByteArray(in));
+        }
+
+        perform(MockMvcRequestBuilders.get("/nad/api/defs").param("fields", "classes").param("annotations", "false"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("@.routes").doesNotExist())
+                .andExpect(MockMvcResultMatchers.jsonPath("@.classes.length()").value(defs.get("classes").size()))
+                .andExpect(MockMvcResultMatchers.jsonPath("@.classes[*].annotations").value(Matchers.everyItem(Matchers.empty())));
+        perform(MockMvcRequestBuilders.get("/nad/api/defs").param("annotations", "false"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("@.modules.length()").value(defs.get("modules").size()))
+                .andExpect(MockMvcResultMatchers.jsonPath("@.routes[0].parameters[0].annotations").isEmpty());
+
+        // The annotations are omitted by the converter of the host application too.
+        NadApiController nad = new NadApiController();
+        ReflectionTestUtils.setField(nad, "rhMapping", rhMapping);
+        ReflectionTestUtils.setField(nad, "rhAdapter", ReflectionTestUtils.getField(nadApiController, "rhAdapter"));
+        ReflectionTestUtils.setField(nad, "serializer", "converter");
+        ResponseEntity<?> bare = nad.defs(null, null, false, null, null, null).get(10, TimeUnit.SECONDS);
+        assertEquals(HttpStatus.OK, bare.getStatusCode());
+        JsonNode bareDefs = mapper.readTree((byte[]) bare.getBody());
+        assertEquals(defs.get("routes").size(), bareDefs.get("routes").size());
+        // The annotations of a member are a list of lists, each of them is empty too.
+        assertTrue(bareDefs.findValues("annotations").stream()
+                .allMatch(i -> i.isNull() || StreamSupport.stream(i.spliterator(), false).allMatch(JsonNode::isEmpty)));
+        // The items serialized by the converter are sliced from the same defs.
+        Resource page = nad.getCache().sections(false).get(10, TimeUnit.SECONDS).page("routes", null, NadApiController.MAX_PAGE_SIZE, false).getBody();
+        assertNotNull(page);
+        assertEquals(bareDefs.get("routes"), mapper.readTree(page.getInputStream()).get("items"));
+
+        perform(MockMvcRequestBuilders.get("/nad/api/defs").param("fields", "routes,unknown"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+        perform(MockMvcRequestBuilders.get("/nad/api/defs").param("fields", "routes").param("format", "compact"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    void ndjson() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode defs = mapper.readTree(perform(MockMvcRequestBuilders.get("/nad/api/defs")).andReturn().getResponse().getContentAsByteArray());
+        MvcResult all = perform(MockMvcRequestBuilders.get("/nad/api/routes").header(HttpHeaders.ACCEPT, "application/x-ndjson"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(NadDefsSections.NDJSON))
+                .andExpect(MockMvcResultMatchers.header().doesNotExist(NadDefsSections.NEXT_CURSOR))
+                .andReturn();
+        byte[] body = all.getResponse().getContentAsByteArray();
+        assertEquals(body.length, all.getResponse().getContentLength());
+        String[] lines = new String(body, StandardCharsets.UTF_8).split("\n");
+        assertEquals(defs.get("routes").size(), lines.length);
+        for (int i = 0; i < lines.length; i++) assertEquals(defs.get("routes").get(i), mapper.readTree(lines[i]));
+
+        MvcResult first = perform(MockMvcRequestBuilders.get("/nad/api/routes").param("limit", "1")
+                        .header(HttpHeaders.ACCEPT, "application/x-ndjson"))
+                .andExpect(MockMvcResultMatchers.header().exists(NadDefsSections.NEXT_CURSOR))
+                .andReturn();
+        assertEquals(lines[0] + "\n", new String(first.getResponse().getContentAsByteArray(), StandardCharsets.UTF_8));
+        String cursor = first.getResponse().getHeader(NadDefsSections.NEXT_CURSOR);
+        perform(MockMvcRequestBuilders.get("/nad/api/routes").param("cursor", cursor).param("limit", "1")
+                .header(HttpHeaders.ACCEPT, "application/x-ndjson"))
+                .andExpect(MockMvcResultMatchers.content().bytes((lines[1] + "\n").getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void samePayload() {
+        Object body = nadApiController.defs(null, null, null, null, null, null).join().getBody();
+        assertNotNull(body);
+        assertSame(body, nadApiController.defs(null, null, null, null, null, null).join().getBody());
+    }
+
     @Test
     void sameObject() {
         NadResult defs = nadApiController.getDefs();
         assertSame(defs, nadApiController.getDefs());
-        nadApiController.initCache();
-        assertSame(defs, nadApiController.getDefs());
+        assertSame(defs, nadApiController.getCache().graph(Thread.NORM_PRIORITY).join().getResult());
+    }
+
+    @Test
+    void detached() {
+        NadResult defs = nadApiController.getDefs();
+        assertTrue(defs instanceof NadDetachedResult);
+        NadEnum role = defs.getEnums().stream()
+                .filter(i -> i.getName().equals(Role.class.getTypeName())).findFirst().orElse(null);
+        assertNotNull(role);
+        // The values of enum constants are converted by the ObjectMapper of the application.
+        assertEquals(Role.ADMIN.name(), NadDetachedResult.plainValueOf(role.getConstants().get(0)));
+        assertEquals(7, role.getConstants().get(0).getProperties().get("code"));
+    }
+
+    @Test
+    void singleFlight() throws Exception {
+        int n = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(n);
+        try {
+            NadApiController nad = new NadApiController();
+            ReflectionTestUtils.setField(nad, "rhMapping", ReflectionTestUtils.getField(nadApiController, "rhMapping"));
+            CountDownLatch ready = new CountDownLatch(1);
+            List<Future<CompletableFuture<NadDependencyGraph>>> futures = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                futures.add(executor.submit(() -> {
+                    ready.await();
+                    return nad.getCache().graph(Thread.NORM_PRIORITY);
+                }));
+            }
+            ready.countDown();
+            // All concurrent callers share the same in-flight computation.
+            CompletableFuture<NadDependencyGraph> first = futures.get(0).get();
+            for (Future<CompletableFuture<NadDependencyGraph>> future : futures) {
+                assertSame(first, future.get());
+            }
+            assertSame(first.get(10, TimeUnit.SECONDS), nad.getGraph());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static NadClass findUser(NadDependencyGraph graph) {
+        return graph.getResult().getClasses().stream()
+                .filter(i -> i.getName().equals(User.class.getTypeName())).findFirst().orElse(null);
+    }
+
+    @Test
+    void refresh() throws Exception {
+        String dynamic = DynamicController.class.getTypeName();
+        NadDependencyGraph graph = nadApiController.getGraph();
+        // Nothing is recollected if no route is changed.
+        assertSame(graph, nadApiController.refresh().get(10, TimeUnit.SECONDS));
+
+        RequestMappingInfo info = RequestMappingInfo.paths("/dynamic").build();
+        rhMapping.registerMapping(info, new DynamicController(), DynamicController.class.getMethod("getRole"));
+        NadDependencyGraph added;
+        try {
+            added = nadApiController.refresh().get(10, TimeUnit.SECONDS);
+        } finally {
+            rhMapping.unregisterMapping(info);
+        }
+        assertSame(added, nadApiController.getGraph());
+        assertTrue(added.getResult().getRoutes().stream().anyMatch(i -> i.getBean().equals(dynamic)));
+        assertEquals(Collections.singleton(Role.class.getTypeName()), added.getClosure(Collections.singletonList(dynamic)));
+        // The definitions which are not reachable from the changed modules are kept.
+        assertSame(findUser(graph), findUser(added));
+
+        NadDependencyGraph removed = nadApiController.refresh().get(10, TimeUnit.SECONDS);
+        assertTrue(removed.getResult().getRoutes().stream().noneMatch(i -> i.getBean().equals(dynamic)));
+        assertEquals(graph.getResult().getRoutes().size(), removed.getResult().getRoutes().size());
+        perform(MockMvcRequestBuilders.get("/nad/api/defs").param("modules", dynamic))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("@.routes").isEmpty());
+    }
+
+    @Test
+    void prebuiltRefreshed() throws Exception {
+        Path dir = Files.createTempDirectory("nad-prebuilt");
+        Path json = dir.resolve(NadApiController.PREBUILT_DEFS);
+        Files.createDirectories(json.getParent());
+        Files.write(json, "{\"prebuilt\":true}".getBytes(StandardCharsets.UTF_8));
+        NadApiController nad = new NadApiController();
+        ReflectionTestUtils.setField(nad, "rhMapping", rhMapping);
+        ReflectionTestUtils.setField(nad, "rhAdapter", ReflectionTestUtils.getField(nadApiController, "rhAdapter"));
+        ReflectionTestUtils.setField(nad, "usePrebuilt", true);
+        Thread thread = Thread.currentThread();
+        ClassLoader loader = thread.getContextClassLoader();
+        RequestMappingInfo info = RequestMappingInfo.paths("/dynamic").build();
+        try (URLClassLoader prebuilt = new URLClassLoader(new URL[]{dir.toUri().toURL()}, loader)) {
+            thread.setContextClassLoader(prebuilt);
+            assertTrue(nad.getCache().payload(Thread.NORM_PRIORITY).join().toResponse(null).getBody() instanceof Resource);
+            assertFalse(nad.getCache().hasGraph());
+
+            rhMapping.registerMapping(info, new DynamicController(), DynamicController.class.getMethod("getRole"));
+            // The changed routes are detected without any collected defs.
+            nad.onContextRefreshed();
+            // The prebuilt defs are skipped, since they do not have the registered route.
+            Object body = nad.getCache().payload(Thread.NORM_PRIORITY).join().toResponse(null).getBody();
+            assertTrue(body instanceof byte[]);
+            JsonNode defs = new ObjectMapper().readTree((byte[]) body);
+            assertFalse(defs.has("prebuilt"));
+            assertTrue(defs.get("routes").findValuesAsText("bean").contains(DynamicController.class.getTypeName()));
+        } finally {
+            thread.setContextClassLoader(loader);
+            rhMapping.unregisterMapping(info);
+        }
+    }
+
+    @Test
+    void refreshDuringSerialization() throws Exception {
+        NadApiController nad = new NadApiController();
+        ReflectionTestUtils.setField(nad, "rhMapping", rhMapping);
+        ReflectionTestUtils.setField(nad, "rhAdapter", ReflectionTestUtils.getField(nadApiController, "rhAdapter"));
+        String dynamic = DynamicController.class.getTypeName();
+        RequestMappingInfo info = RequestMappingInfo.paths("/dynamic").build();
+        CompletableFuture<NadDefsPayload> previous = nad.getCache().payload(Thread.NORM_PRIORITY);
+        try {
+            rhMapping.registerMapping(info, new DynamicController(), DynamicController.class.getMethod("getRole"));
+            nad.refresh().get(10, TimeUnit.SECONDS);
+            // Whenever the previous payload is completed, it is never served for the refreshed routes.
+            Object body = nad.getCache().payload(Thread.NORM_PRIORITY).join().toResponse(null).getBody();
+            assertTrue(new ObjectMapper().readTree((byte[]) body).get("routes").findValuesAsText("bean").contains(dynamic));
+            previous.get(10, TimeUnit.SECONDS);
+            body = nad.getCache().payload(Thread.NORM_PRIORITY).join().toResponse(null).getBody();
+            assertTrue(new ObjectMapper().readTree((byte[]) body).get("routes").findValuesAsText("bean").contains(dynamic));
+        } finally {
+            rhMapping.unregisterMapping(info);
+        }
     }
 
     @Test
     void construct() {
         NadApiController nad = new NadApiController();
         assertThrows(NoHandlerMappingException.class, nad::getDefs);
+        // The failure is not cached, so the next caller retries.
+        assertThrows(NoHandlerMappingException.class, nad::getDefs);
+        CompletionException e = assertThrows(CompletionException.class, () -> nad.defs(null, null, null, null, null, null).join());
+        assertTrue(e.getCause() instanceof NoMessageConverterException);
+        e = assertThrows(CompletionException.class, () -> nad.defs(Collections.singletonList("a.B"), null, null, null, null, null).join());
+        assertTrue(e.getCause() instanceof NoMessageConverterException);
     }
 }
\ No newline at end of file
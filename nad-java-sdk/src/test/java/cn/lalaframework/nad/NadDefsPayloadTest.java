@@ -0,0 +1,78 @@
+package cn.lalaframework.nad;
+
+import cn.lalaframework.nad.interfaces.NadResult;
+import cn.lalaframework.nad.models.NadResultImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NadDefsPayloadTest {
+    @Test
+    void acceptsGzip() {
+        assertTrue(NadDefsPayload.acceptsGzip("gzip"));
+        assertTrue(NadDefsPayload.acceptsGzip("deflate, GZIP;q=0.5"));
+        assertTrue(NadDefsPayload.acceptsGzip("br, *"));
+        assertTrue(NadDefsPayload.acceptsGzip("x-gzip"));
+
+        assertFalse(NadDefsPayload.acceptsGzip(null));
+        assertFalse(NadDefsPayload.acceptsGzip(""));
+        assertFalse(NadDefsPayload.acceptsGzip("identity"));
+        assertFalse(NadDefsPayload.acceptsGzip("gzip;q=0"));
+        assertFalse(NadDefsPayload.acceptsGzip("gzip;q=0.0, *"));
+        assertFalse(NadDefsPayload.acceptsGzip("*;q=0"));
+        assertFalse(NadDefsPayload.acceptsGzip("gzip;q=abc"));
+    }
+
+    @Test
+    void prebuilt() {
+        Resource json = new ByteArrayResource("{}".getBytes(StandardCharsets.UTF_8));
+        Resource gzipJson = new ByteArrayResource(new byte[]{1, 2, 3});
+        NadDefsPayload payload = NadDefsPayload.fromResource(json, gzipJson);
+
+        ResponseEntity<?> plain = payload.toResponse(null);
+        assertSame(json, plain.getBody());
+        assertEquals(2, plain.getHeaders().getContentLength());
+        assertNull(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+
+        ResponseEntity<?> gzip = payload.toResponse("gzip");
+        assertSame(gzipJson, gzip.getBody());
+        assertEquals(3, gzip.getHeaders().getContentLength());
+        assertEquals("gzip", gzip.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+
+        // The plain JSON is used if there is no gzip resource.
+        ResponseEntity<?> fallback = NadDefsPayload.fromResource(json, null).toResponse("gzip");
+        assertSame(json, fallback.getBody());
+        assertNull(fallback.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    void write() throws Exception {
+        Map<String, Object> value = Collections.singletonMap("routes", Collections.singletonList(Collections.emptyMap()));
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        List<HttpMessageConverter<?>> converters = Collections.singletonList(new MappingJackson2HttpMessageConverter(mapper));
+        byte[] body = NadDefsPayload.write(value, converters, 1).getBytes(false);
+        assertNotNull(body);
+        // The settings of the host application are not used.
+        assertEquals("{\"routes\":[{}]}", new String(body, StandardCharsets.UTF_8));
+        assertEquals(mapper.readTree(NadDefsPayload.serialize(value, converters).getBytes(false)), mapper.readTree(body));
+
+        // A NadResult is written in chunks by several threads, the bytes are the same.
+        NadResult result = new NadResultImpl(Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList());
+        assertArrayEquals(NadDefsPayload.write(result, converters, 1).getBytes(false),
+                NadDefsPayload.write(result, converters, 4).getBytes(false));
+    }
+}
@@ -0,0 +1,131 @@
+package cn.lalaframework.nad;
+
+import cn.lalaframework.nad.controllers.DynamicController;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = TestApplication.class, properties = "nad.storage=mapped")
+class NadMappedStorageTest {
+    private static final Path DIR;
+
+    static {
+        try {
+            DIR = Files.createTempDirectory("nad-mapped");
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("nad.snapshot-dir", DIR::toString);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private NadApiController nadApiController;
+
+    @Autowired
+    private RequestMappingHandlerMapping rhMapping;
+
+    private byte[] get(boolean useGzip) throws Exception {
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get("/nad/api/defs");
+        if (useGzip) request.header(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        MvcResult result = mockMvc.perform(request).andReturn();
+        MockHttpServletResponse response = mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse();
+        assertEquals(useGzip ? "gzip" : null, response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        byte[] body = response.getContentAsByteArray();
+        if (!useGzip) return body;
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return StreamUtils.copyToByteArray(in);
+        }
+    }
+
+    @Test
+    void mapped() throws Exception {
+        // The defs are streamed from the mapped files, the gzip one is the same as the plain one.
+        byte[] body = get(false);
+        assertTrue(body.length > 0);
+        assertEquals('{', body[0]);
+        assertArrayEquals(body, get(true));
+        assertArrayEquals(body, get(false));
+
+        // The collected defs are released, only the mapped snapshot is held.
+        assertFalse(nadApiController.getCache().hasGraph());
+        Object response = nadApiController.defs(null, null, null, null, null, null).get(10, TimeUnit.SECONDS).getBody();
+        assertTrue(response instanceof Resource);
+
+        // The pages and projections are sliced from the mapped files, the defs are never collected again.
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode defs = mapper.readTree(body);
+        MvcResult page = mockMvc.perform(MockMvcRequestBuilders.get("/nad/api/routes").param("limit", "1000")).andReturn();
+        byte[] items = mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(page))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        assertEquals(defs.get("routes"), mapper.readTree(items).get("items"));
+        ResponseEntity<?> projection = nadApiController.defs(null, Collections.singletonList("enums"), null, null, null, null)
+                .get(10, TimeUnit.SECONDS);
+        assertEquals(defs.get("enums"), mapper.readTree(StreamUtils.copyToByteArray(
+                ((Resource) projection.getBody()).getInputStream())).get("enums"));
+        assertFalse(nadApiController.getCache().hasGraph());
+    }
+
+    @Test
+    void refreshed() throws Exception {
+        NadApiController nad = new NadApiController();
+        ReflectionTestUtils.setField(nad, "rhMapping", rhMapping);
+        ReflectionTestUtils.setField(nad, "rhAdapter", ReflectionTestUtils.getField(nadApiController, "rhAdapter"));
+        ReflectionTestUtils.setField(nad, "snapshotDir", DIR.toString());
+        ReflectionTestUtils.setField(nad, "storage", "mapped");
+        assertTrue(nad.getCache().payload(Thread.NORM_PRIORITY).get(10, TimeUnit.SECONDS)
+                .toResponse(null).getBody() instanceof Resource);
+        assertFalse(nad.getCache().hasGraph());
+
+        RequestMappingInfo info = RequestMappingInfo.paths("/dynamic").build();
+        try {
+            rhMapping.registerMapping(info, new DynamicController(), DynamicController.class.getMethod("getRole"));
+            // The routes are still fingerprinted once the collected defs are released.
+            nad.onContextRefreshed();
+            assertTrue(nad.getCache().hasGraph());
+            Object body = nad.getCache().payload(Thread.NORM_PRIORITY).get(10, TimeUnit.SECONDS).toResponse(null).getBody();
+            assertTrue(body instanceof byte[]);
+            assertTrue(new ObjectMapper().readTree((byte[]) body).get("routes").findValuesAsText("bean")
+                    .contains(DynamicController.class.getTypeName()));
+        } finally {
+            rhMapping.unregisterMapping(info);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package cn.lalaframework.nad;
+
+import cn.lalaframework.nad.controllers.DynamicController;
+import cn.lalaframework.nad.controllers.MyController;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@SpringBootTest(classes = TestApplication.class)
+class NadSnapshotTest {
+    private static final Path DIR;
+
+    static {
+        try {
+            DIR = Files.createTempDirectory("nad-snapshot");
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("nad.snapshot-dir", DIR::toString);
+    }
+
+    @Autowired
+    private NadApiController nadApiController;
+
+    @Autowired
+    private RequestMappingHandlerMapping rhMapping;
+
+    private static byte[] read(Resource resource) throws IOException {
+        try (InputStream in = resource.getInputStream()) {
+            return StreamUtils.copyToByteArray(in);
+        }
+    }
+
+    @Test
+    void snapshot() throws Exception {
+        byte[] body = (byte[]) nadApiController.defs(null, null, null, null, null, null).get(10, TimeUnit.SECONDS).getBody();
+        assertNotNull(body);
+        Path json;
+        try (Stream<Path> files = Files.list(DIR)) {
+            json = files.filter(i -> i.toString().endsWith(".json")).findFirst().orElse(null);
+        }
+        assertNotNull(json);
+        assertArrayEquals(body, Files.readAllBytes(json));
+
+        // Forget the defs as if the application is booted again, the snapshot is served without any collection.
+        ReflectionTestUtils.setField(nadApiController, "cache", null);
+        ResponseEntity<?> response = nadApiController.defs(null, null, null, null, null, null).get(10, TimeUnit.SECONDS);
+        assertTrue(response.getBody() instanceof Resource);
+        Resource resource = (Resource) response.getBody();
+        assertEquals(body.length, resource.contentLength());
+        assertArrayEquals(body, read(resource));
+        // Each response reads the buffer from the beginning.
+        assertArrayEquals(body, read(resource));
+        assertFalse(nadApiController.getCache().hasGraph());
+    }
+
+    @Test
+    void fingerprint(@TempDir Path dir) throws Exception {
+        Path file = Files.write(dir.resolve("a.class"), "a".getBytes(StandardCharsets.UTF_8));
+        List<Class<?>> classes = Collections.singletonList(MyController.class);
+        List<String> routes = NadRouteFingerprint.describe(rhMapping);
+        List<String> rules = Collections.singletonList("java.*");
+        String key = NadSnapshot.fingerprint(dir.toString(), classes, routes, rules, "nad", Collections.emptyList());
+        assertEquals(key, NadSnapshot.fingerprint(dir.toString(), classes, routes, rules, "nad", Collections.emptyList()));
+
+        assertNotEquals(key, NadSnapshot.fingerprint(dir.toString(), classes, routes,
+                Collections.singletonList("javax.*"), "nad", Collections.emptyList()));
+        assertNotEquals(key, NadSnapshot.fingerprint(dir.toString(), classes, routes, rules, "converter", Collections.emptyList()));
+        assertNotEquals(key, NadSnapshot.fingerprint(dir.toString(), classes, routes, rules, "nad",
+                Collections.singletonList(new StringHttpMessageConverter())));
+
+        // A route which depends on the properties or profiles changes the key, even if the classes are the same.
+        RequestMappingInfo info = RequestMappingInfo.paths("/dynamic").build();
+        rhMapping.registerMapping(info, new DynamicController(), DynamicController.class.getMethod("getRole"));
+        try {
+            assertNotEquals(key, NadSnapshot.fingerprint(dir.toString(), classes, NadRouteFingerprint.describe(rhMapping),
+                    rules, "nad", Collections.emptyList()));
+        } finally {
+            rhMapping.unregisterMapping(info);
+        }
+        assertEquals(routes, NadRouteFingerprint.describe(rhMapping));
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+        assertNotEquals(key, NadSnapshot.fingerprint(dir.toString(), classes, routes, rules, "nad", Collections.emptyList()));
+    }
+
+    @Test
+    void privateDir(@TempDir Path parent) throws IOException {
+        assumeTrue(parent.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        Path dir = NadSnapshot.privateDir(parent);
+        assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(dir));
+        assertEquals(dir, NadSnapshot.privateDir(parent));
+
+        // A directory which can be written by others is refused, so is a link to another directory.
+        Files.setPosixFilePermissions(dir, PosixFilePermissions.fromString("rwxrwxrwx"));
+        assertThrows(IOException.class, () -> NadSnapshot.privateDir(parent));
+        Files.delete(dir);
+        Files.createSymbolicLink(dir, Files.createDirectory(parent.resolve("other")));
+        assertThrows(IOException.class, () -> NadSnapshot.privateDir(parent));
+    }
+
+    @Test
+    void saveAndLoad(@TempDir Path dir) throws IOException {
+        NadSnapshot snapshot = new NadSnapshot(dir.resolve("nested"), "key");
+        assertNull(snapshot.load());
+        byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+        snapshot.save(body, new byte[]{1, 2}, null);
+        NadDefsPayload payload = snapshot.load();
+        assertNotNull(payload);
+        assertArrayEquals(body, read((Resource) payload.toResponse(null).getBody()));
+        assertArrayEquals(new byte[]{1, 2}, read((Resource) payload.toResponse("gzip").getBody()));
+        assertNull(payload.getSections());
+    }
+
+    @Test
+    void index(@TempDir Path dir) throws Exception {
+        // A controller without snapshots, so that the defs are serialized in the heap.
+        NadApiController nad = new NadApiController();
+        ReflectionTestUtils.setField(nad, "rhMapping", rhMapping);
+        ReflectionTestUtils.setField(nad, "rhAdapter", ReflectionTestUtils.getField(nadApiController, "rhAdapter"));
+        NadDefsPayload payload = nad.getCache().payload(Thread.NORM_PRIORITY).get(10, TimeUnit.SECONDS);
+        byte[] body = payload.getBytes(false);
+        NadDefsSections sections = payload.getSections();
+        assertNotNull(body);
+        assertNotNull(sections);
+        NadSnapshot snapshot = new NadSnapshot(dir, "key");
+        snapshot.save(body, payload.getBytes(true), sections);
+        NadDefsPayload loaded = snapshot.load();
+        assertNotNull(loaded);
+        NadDefsSections mapped = loaded.getSections();
+        assertNotNull(mapped);
+        // The mapped defs are paged and projected exactly as the serialized ones.
+        for (String section : Arrays.asList("routes", "classes", "enums")) {
+            assertArrayEquals(read(sections.page(section, null, 2, false).getBody()),
+                    read(mapped.page(section, null, 2, false).getBody()));
+            assertArrayEquals(read(sections.page(section, null, Integer.MAX_VALUE, true).getBody()),
+                    read(mapped.page(section, null, Integer.MAX_VALUE, true).getBody()));
+        }
+        NadDefsPayload projection = sections.project(NadDefsSections.FIELDS);
+        assertArrayEquals(body, read((Resource) projection.toResponse(null).getBody()));
+        assertEquals(payload.getETag(false), projection.getETag(false));
+        assertArrayEquals(body, read((Resource) mapped.project(NadDefsSections.FIELDS).toResponse(null).getBody()));
+
+        // A stale index is removed with a body without sections, and a malformed one is refused.
+        Path index = dir.resolve("defs-key.index");
+        Files.write(index, new byte[]{0, 0, 0, 1, 0});
+        assertThrows(IOException.class, snapshot::load);
+        snapshot.save(body, payload.getBytes(true), null);
+        assertFalse(Files.exists(index));
+    }
+}
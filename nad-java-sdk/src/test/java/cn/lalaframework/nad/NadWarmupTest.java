@@ -0,0 +1,74 @@
+package cn.lalaframework.nad;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = TestApplication.class, properties = "nad.warmup=true")
+class NadWarmupTest {
+    @Autowired
+    private NadApiController nadApiController;
+
+    @Test
+    void warmup() throws Exception {
+        // The warm-up is started by the ApplicationReadyEvent, before any request.
+        AtomicReference<?> generation =
+                (AtomicReference<?>) ReflectionTestUtils.getField(nadApiController.getCache(), "generationRef");
+        assertNotNull(generation);
+        AtomicReference<?> ref = (AtomicReference<?>) ReflectionTestUtils.getField(generation.get(), "payloadRef");
+        assertNotNull(ref);
+        CompletableFuture<?> payload = (CompletableFuture<?>) ref.get();
+        assertNotNull(payload);
+        payload.get(10, TimeUnit.SECONDS);
+        // Requests share the warmed-up payload.
+        assertSame(payload, nadApiController.getCache().payload(Thread.NORM_PRIORITY));
+        Object body = nadApiController.defs(null, null, null, null, null, null).join().getBody();
+        assertNotNull(body);
+        assertSame(body, nadApiController.defs(null, null, null, null, null, null).join().getBody());
+    }
+
+    @Test
+    void workers() throws Exception {
+        NadWorkers workers = new NadWorkers();
+        try {
+            CompletableFuture<Thread> thread = new CompletableFuture<>();
+            CompletableFuture<Integer> priority = new CompletableFuture<>();
+            workers.withPriority(Thread.MIN_PRIORITY).execute(() -> {
+                thread.complete(Thread.currentThread());
+                priority.complete(Thread.currentThread().getPriority());
+            });
+            assertEquals(Thread.MIN_PRIORITY, priority.get(10, TimeUnit.SECONDS));
+            Thread worker = thread.get(10, TimeUnit.SECONDS);
+            assertTrue(worker.getName().startsWith("nad-worker-"));
+            assertTrue(worker.isDaemon());
+            // The priority of a worker is restored after each task, since the workers are shared.
+            CompletableFuture<Integer> restored = new CompletableFuture<>();
+            workers.withPriority(Thread.NORM_PRIORITY).execute(() -> restored.complete(Thread.currentThread().getPriority()));
+            assertEquals(Thread.NORM_PRIORITY, restored.get(10, TimeUnit.SECONDS));
+            assertFalse(workers.isShutdown());
+        } finally {
+            workers.shutdown();
+        }
+        assertTrue(workers.isShutdown());
+    }
+
+    @Test
+    void destroy() {
+        // The workers are created once with the cache, and stopped with the controller.
+        NadApiController nad = new NadApiController();
+        NadDefsCache cache = nad.getCache();
+        assertSame(cache, nad.getCache());
+        NadWorkers workers = (NadWorkers) ReflectionTestUtils.getField(nad, "workers");
+        assertNotNull(workers);
+        assertFalse(workers.isShutdown());
+        nad.destroy();
+        assertTrue(workers.isShutdown());
+    }
+}
@@ -0,0 +1,14 @@
+package cn.lalaframework.nad.controllers;
+
+import cn.lalaframework.nad.models.Role;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * A controller whose routes are registered by RequestMappingHandlerMapping.registerMapping at runtime.
+ */
+public class DynamicController {
+    @ResponseBody
+    public Role getRole() {
+        return Role.ADMIN;
+    }
+}
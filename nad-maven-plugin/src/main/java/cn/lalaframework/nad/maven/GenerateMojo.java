@@ -0,0 +1,131 @@
+package cn.lalaframework.nad.maven;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Collect the defs of the compiled classes in a forked JVM, and write them to the output directory,
+ * so that nad-sdk can serve them without any reflection at runtime.
+ */
+@Mojo(
+        name = "generate",
+        defaultPhase = LifecyclePhase.PROCESS_CLASSES,
+        requiresDependencyResolution = ResolutionScope.COMPILE_PLUS_RUNTIME,
+        threadSafe = true
+)
+public class GenerateMojo extends AbstractMojo {
+    private static final String GROUP_ID = "cn.lalaframework";
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject project;
+
+    @Parameter(defaultValue = "${plugin}", readonly = true, required = true)
+    private PluginDescriptor plugin;
+
+    /**
+     * The packages which contain the controllers, defaults to the groupId of the project.
+     */
+    @Parameter(property = "nad.basePackages")
+    private List<String> basePackages;
+
+    /**
+     * Additional ClassExcluder rules, the default rules of nad-core are always applied.
+     */
+    @Parameter(property = "nad.excludes")
+    private List<String> excludes;
+
+    /**
+     * The directory to write defs.json and defs.json.gz to, it is the classpath location read by nad-sdk.
+     */
+    @Parameter(property = "nad.outputDirectory", defaultValue = "${project.build.outputDirectory}/META-INF/nad")
+    private File outputDirectory;
+
+    @Parameter(property = "nad.parallelism", defaultValue = "1")
+    private int parallelism;
+
+    /**
+     * Extra arguments of the forked JVM, such as "-Xmx1g".
+     */
+    @Parameter(property = "nad.jvmArgs")
+    private List<String> jvmArgs;
+
+    @Parameter(property = "nad.skip", defaultValue = "false")
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().info("Skipping nad defs generation");
+            return;
+        }
+
+        List<String> command = new ArrayList<>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        if (jvmArgs != null) command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(String.join(File.pathSeparator, buildClasspath()));
+        command.add(NadDefsGenerator.class.getName());
+        command.add(outputDirectory.getPath());
+        command.add(String.join(",", getBasePackages()));
+        command.add(excludes == null ? "" : String.join(",", excludes));
+        command.add(String.valueOf(parallelism));
+
+        getLog().info("Generating nad defs to " + outputDirectory);
+        int code;
+        try {
+            code = new ProcessBuilder(command).inheritIO().start().waitFor();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to fork the JVM for nad defs generation", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while generating nad defs", e);
+        }
+        if (code != 0) throw new MojoExecutionException("Failed to generate nad defs, the forked JVM exited with " + code);
+    }
+
+    private List<String> getBasePackages() {
+        if (basePackages != null && !basePackages.isEmpty()) return basePackages;
+        List<String> list = new ArrayList<>();
+        list.add(project.getGroupId());
+        return list;
+    }
+
+    /**
+     * The project compile and runtime classpath, and the jars of this plugin and nad-core.
+     * The provided dependencies (such as the servlet API of a WAR project) are included, since the controllers
+     * reference them.
+     * NOTE: The other plugin dependencies are not added, the project provides its own Spring and Jackson.
+     */
+    private Set<String> buildClasspath() throws MojoExecutionException {
+        Set<String> classpath;
+        try {
+            classpath = new LinkedHashSet<>(project.getCompileClasspathElements());
+            classpath.addAll(project.getRuntimeClasspathElements());
+        } catch (DependencyResolutionRequiredException e) {
+            throw new MojoExecutionException("Failed to resolve the project classpath", e);
+        }
+        List<Artifact> artifacts = new ArrayList<>(plugin.getArtifacts());
+        artifacts.add(plugin.getPluginArtifact());
+        for (Artifact artifact : artifacts) {
+            if (GROUP_ID.equals(artifact.getGroupId()) && artifact.getFile() != null) {
+                classpath.add(artifact.getFile().getPath());
+            }
+        }
+        return classpath;
+    }
+}
@@ -0,0 +1,187 @@
+package cn.lalaframework.nad.maven;
+
+import cn.lalaframework.nad.interfaces.NadResult;
+import cn.lalaframework.nad.models.NadContext;
+import cn.lalaframework.nad.models.NadJsonWriter;
+import cn.lalaframework.nad.utils.ClassExcluder;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Collect the defs of compiled controllers, and write them as the prebuilt resources of nad-sdk.
+ * NOTE: This class runs in a forked JVM with the project classpath, it must not depend on the Maven API.
+ */
+public class NadDefsGenerator {
+    public static final String DEFS_FILE = "defs.json";
+
+    public static final String GZIP_DEFS_FILE = "defs.json.gz";
+
+    private NadDefsGenerator() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Arguments: outputDirectory basePackages excludes parallelism
+     * The basePackages and excludes are comma separated lists, the excludes may be empty.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) throw new IllegalArgumentException("Usage: outputDirectory basePackages excludes parallelism");
+        File outputDirectory = new File(args[0]);
+        List<String> excludes = new ArrayList<>(ClassExcluder.DEFAULT_RULES);
+        excludes.addAll(split(args[2]));
+        try {
+            // The defs are streamed to the files as they are dumped, a NadResult of the whole application is never built.
+            run(split(args[1]), new ClassExcluder(excludes), Integer.parseInt(args[3]), () -> {
+                try (JsonGenerator generator = createGenerator(outputDirectory)) {
+                    NadContext.dump(generator);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @NonNull
+    private static List<String> split(@NonNull String list) {
+        return Arrays.stream(list.split(",")).map(String::trim).filter(i -> !i.isEmpty()).collect(Collectors.toList());
+    }
+
+    /**
+     * Collect all controllers in specified packages without creating any bean.
+     * The controllers are registered as lazy bean definitions, the RequestMappingHandlerMapping
+     * only reads their types, so the dependencies of controllers are never required.
+     *
+     * @param basePackages The packages to be scanned.
+     * @param excluder     The classes which should not be collected.
+     * @param parallelism  The parallelism of NadContext.
+     */
+    @NonNull
+    public static NadResult collect(@NonNull List<String> basePackages, @NonNull ClassExcluder excluder, int parallelism) {
+        return run(basePackages, excluder, parallelism, NadContext::dump);
+    }
+
+    /**
+     * Collect all controllers in specified packages, and dump them by the dumper in the same NadContext transaction.
+     */
+    private static <R> R run(@NonNull List<String> basePackages, @NonNull ClassExcluder excluder, int parallelism,
+                             @NonNull Supplier<R> dumper) {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        // The RestController is annotated by Controller, so it is also matched.
+        scanner.addIncludeFilter(new AnnotationTypeFilter(Controller.class));
+        try (GenericApplicationContext context = new GenericApplicationContext()) {
+            for (String basePackage : basePackages) {
+                for (BeanDefinition bd : scanner.findCandidateComponents(basePackage)) {
+                    String name = bd.getBeanClassName();
+                    if (name == null || context.containsBeanDefinition(name)) continue;
+                    bd.setLazyInit(true);
+                    context.registerBeanDefinition(name, bd);
+                }
+            }
+            context.refresh();
+            RequestMappingHandlerMapping mapping = new RequestMappingHandlerMapping();
+            mapping.setApplicationContext(context);
+            mapping.afterPropertiesSet();
+            return NadContext.run(() -> {
+                NadContext.collectSpringWeb(mapping);
+                return dumper.get();
+            }, excluder, null, parallelism);
+        }
+    }
+
+    /**
+     * Write the result as JSON, and a gzip copy of it.
+     */
+    public static void write(@NonNull NadResult result, @NonNull File outputDirectory) throws IOException {
+        try (JsonGenerator generator = createGenerator(outputDirectory)) {
+            NadJsonWriter.of(generator).write(result);
+        }
+    }
+
+    /**
+     * Create a generator which writes both the JSON and the gzip copy of it at the same time,
+     * so the serialized defs are never buffered as a whole. Both files are closed with the generator.
+     * NOTE: The ObjectMapper is configured as the default one of Spring Boot, it writes the values of enum constants.
+     */
+    @NonNull
+    private static JsonGenerator createGenerator(@NonNull File outputDirectory) throws IOException {
+        Files.createDirectories(outputDirectory.toPath());
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+        OutputStream json = new BufferedOutputStream(new FileOutputStream(new File(outputDirectory, DEFS_FILE)));
+        OutputStream gzip;
+        try {
+            gzip = new GZIPOutputStream(new FileOutputStream(new File(outputDirectory, GZIP_DEFS_FILE)));
+        } catch (IOException e) {
+            json.close();
+            throw e;
+        }
+        return mapper.getFactory().createGenerator(new TeeOutputStream(json, gzip));
+    }
+
+    /**
+     * An OutputStream which writes to two streams.
+     */
+    private static class TeeOutputStream extends OutputStream {
+        @NonNull
+        private final OutputStream first;
+
+        @NonNull
+        private final OutputStream second;
+
+        TeeOutputStream(@NonNull OutputStream first, @NonNull OutputStream second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            first.write(b);
+            second.write(b);
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            first.write(b, off, len);
+            second.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            first.flush();
+            second.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                first.close();
+            } finally {
+                second.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package cn.lalaframework.nad.maven;
+
+import cn.lalaframework.nad.interfaces.NadResult;
+import cn.lalaframework.nad.interfaces.NadRoute;
+import cn.lalaframework.nad.maven.controllers.OrderController;
+import cn.lalaframework.nad.utils.ClassExcluder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NadDefsGeneratorTest {
+    private static final String BASE_PACKAGE = OrderController.class.getPackage().getName();
+
+    private static NadResult collect() {
+        return NadDefsGenerator.collect(
+                Collections.singletonList(BASE_PACKAGE),
+                new ClassExcluder(ClassExcluder.DEFAULT_RULES),
+                1
+        );
+    }
+
+    @Test
+    void collectWithoutCreatingBeans() {
+        NadResult res = collect();
+        List<String> names = res.getRoutes().stream().map(NadRoute::getName).collect(Collectors.toList());
+        assertEquals(2, names.size());
+        assertTrue(names.contains("getOrders"));
+        assertTrue(names.contains("createOrder"));
+        assertEquals(OrderController.class.getTypeName(), res.getModules().get(0).getName());
+        assertEquals(OrderController.Order.class.getTypeName(), res.getClasses().get(0).getName());
+    }
+
+    @Test
+    void main(@TempDir Path dir) throws IOException {
+        NadDefsGenerator.main(new String[]{dir.toString(), BASE_PACKAGE, "", "2"});
+        byte[] json = Files.readAllBytes(dir.resolve(NadDefsGenerator.DEFS_FILE));
+        assertTrue(new String(json).contains("\"/orders\""));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(dir.resolve(NadDefsGenerator.GZIP_DEFS_FILE)))) {
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) out.write(buffer, 0, n);
+        }
+        assertArrayEquals(json, out.toByteArray());
+
+        // The streamed defs are the same as the written result.
+        Path written = dir.resolve("written");
+        NadDefsGenerator.write(collect(), written.toFile());
+        assertArrayEquals(Files.readAllBytes(written.resolve(NadDefsGenerator.DEFS_FILE)), json);
+    }
+
+    @Test
+    void badArguments() {
+        assertThrows(IllegalArgumentException.class, () -> NadDefsGenerator.main(new String[]{new File(".").getPath()}));
+    }
+}
@@ -0,0 +1,42 @@
+package cn.lalaframework.nad.maven.controllers;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+public class OrderController {
+    public OrderController(OrderService service) {
+        // This controller must never be created while generating the defs.
+        throw new IllegalStateException(service.toString());
+    }
+
+    @GetMapping("/orders")
+    public List<Order> getOrders(@RequestParam Long userId) {
+        return null;
+    }
+
+    @PostMapping("/order")
+    public Order createOrder(@RequestBody Order order) {
+        return order;
+    }
+
+    public interface OrderService {
+    }
+
+    public static class Order {
+        private Long id;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+    }
+}